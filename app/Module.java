@@ -0,0 +1,23 @@
+import com.google.inject.AbstractModule;
+
+import cache.InMemoryPersistedQueryStore;
+import cache.InMemoryResolverCache;
+import cache.PersistedQueryStore;
+import cache.ResolverCache;
+import repository.CatalogRepository;
+import repository.InMemoryCatalogRepository;
+import schema.GraphQLProvider;
+
+/**
+ * Guice bindings picked up by Play from the root package.
+ */
+public class Module extends AbstractModule {
+
+	@Override
+	protected void configure() {
+		bind(GraphQLProvider.class).asEagerSingleton();
+		bind(PersistedQueryStore.class).to(InMemoryPersistedQueryStore.class);
+		bind(ResolverCache.class).to(InMemoryResolverCache.class);
+		bind(CatalogRepository.class).to(InMemoryCatalogRepository.class);
+	}
+}
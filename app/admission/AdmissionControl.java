@@ -0,0 +1,131 @@
+package admission;
+
+import admission.ClientBudgets.Charge;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import graphql.ExecutionInput;
+import graphql.language.Document;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import play.Logger;
+import play.Logger.ALogger;
+import schema.FieldCostModel;
+import schema.GraphQLEngine;
+import schema.GraphQLProvider;
+
+/**
+ * Admits operations by their estimated cost rather than by their number.
+ * <p>
+ * Before an operation runs, its cost is estimated from the parsed document with the {@link FieldCostModel}
+ * of the complexity limit, and charged to the client's bucket in {@link ClientBudgets}. A client is
+ * identified by the {@code graphql.admission.apiKeyHeader} request header, or by its address. Operations
+ * costing {@code graphql.admission.expensiveCost} or more run in a {@link LowPriorityLane} of their own,
+ * so a burst of expensive queries cannot take the resolver pool away from cheap lookups.
+ */
+@Singleton
+public class AdmissionControl {
+
+	private static final ALogger logger = Logger.of(AdmissionControl.class);
+
+	private final GraphQLProvider graphQLProvider;
+	private final boolean enabled;
+	private final int expensiveCost;
+	private final String apiKeyHeader;
+	private final ClientBudgets budgets;
+	private final LowPriorityLane lowPriorityLane;
+	private final LongAdder rejected = new LongAdder();
+
+	@Inject
+	public AdmissionControl(GraphQLProvider graphQLProvider, GraphQLMetrics metrics, Configuration configuration) {
+		this.graphQLProvider = graphQLProvider;
+		this.enabled = configuration.getBoolean("graphql.admission.enabled", true);
+		int maxComplexity = configuration.getInt("graphql.limits.maxComplexity", 1000);
+		this.expensiveCost = configuration.getInt("graphql.admission.expensiveCost", 200);
+		this.apiKeyHeader = configuration.getString("graphql.admission.apiKeyHeader", "X-API-Key");
+		this.budgets = new ClientBudgets(configuration.getLong("graphql.admission.budget", 20000L),
+				configuration.getLong("graphql.admission.refillPerSecond", 2000L),
+				configuration.getInt("graphql.admission.maxClients", 100000));
+		this.lowPriorityLane = new LowPriorityLane(configuration.getInt("graphql.admission.lowPriority.concurrency", 8),
+				configuration.getInt("graphql.admission.lowPriority.queueSize", 100));
+		if (budgets.getCapacity() < maxComplexity) {
+			logger.warn("graphql.admission.budget {} is below graphql.limits.maxComplexity {}, some queries can never run",
+					budgets.getCapacity(), maxComplexity);
+		}
+
+		metrics.gauge("graphql_admission_clients", "Clients with a query cost budget that is not full.",
+				budgets::size);
+		metrics.gauge("graphql_admission_rejected", "Operations rejected with 429 because their client was over budget.",
+				rejected::sum);
+		metrics.gauge("graphql_admission_low_priority_running", "Expensive operations running in the low priority lane.",
+				lowPriorityLane::getRunning);
+		metrics.gauge("graphql_admission_low_priority_queued", "Expensive operations waiting for the low priority lane.",
+				lowPriorityLane::getQueued);
+		metrics.gauge("graphql_admission_low_priority_shed", "Expensive operations shed because the low priority queue was full.",
+				lowPriorityLane::getShed);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public String getApiKeyHeader() {
+		return apiKeyHeader;
+	}
+
+	public ClientBudgets getBudgets() {
+		return budgets;
+	}
+
+	/**
+	 * Estimates the operation's cost from its document, as parsed and validated by
+	 * {@link GraphQLEngine#document}. Operations over {@code graphql.limits.maxComplexity} are charged
+	 * their full cost too, although the execution rejects them, so sending them over and over drains the
+	 * client's budget like any other.
+	 *
+	 * @param document the document of the operation, null if it does not parse or validate
+	 * @return the estimated cost; 0 when admission is disabled and for invalid operations
+	 */
+	public int cost(GraphQLEngine engine, Document document, ExecutionInput executionInput) {
+		if (!enabled || document == null) {
+			return 0;
+		}
+		try {
+			return graphQLProvider.getCostModel().estimate(engine.getSchema(), document,
+					executionInput.getOperationName(), executionInput.getVariables());
+		} catch (RuntimeException e) {
+			// e.g. an unknown operation name, which the execution reports
+			return 0;
+		}
+	}
+
+	/**
+	 * Charges the cost to the client's budget. Operations costing nothing are always admitted.
+	 */
+	public Charge charge(String client, int cost) {
+		if (cost <= 0) {
+			return new Charge(true, 0, budgets.getCapacity(), 0);
+		}
+		Charge charge = budgets.charge(client, cost);
+		if (!charge.isAdmitted()) {
+			rejected.increment();
+		}
+		return charge;
+	}
+
+	/**
+	 * Runs cheap operations right away and expensive ones in the low priority lane.
+	 *
+	 * @return the operation's result; failed with a {@link java.util.concurrent.RejectedExecutionException}
+	 *         if the lane is full
+	 */
+	public <T> CompletableFuture<T> run(int cost, Executor executor, Supplier<CompletableFuture<T>> operation) {
+		if (cost < expensiveCost) {
+			return operation.get();
+		}
+		return lowPriorityLane.submit(executor, operation);
+	}
+}
@@ -0,0 +1,141 @@
+package admission;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per client token buckets of query cost, refilled at a fixed rate up to their capacity.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the time at which it will be full again (the generic
+ * cell rate algorithm), so charging it is one compare-and-set and never takes a lock. Buckets live in a
+ * Guava {@link Cache} that expires them once they have not been charged for as long as a refill from
+ * empty takes: by then they are full and hold no information. While {@code maxClients} buckets are live,
+ * clients without one share a single overflow bucket instead of pushing out the buckets of others.
+ */
+public class ClientBudgets {
+
+	private final long capacity;
+	private final long refillPerSecond;
+	private final long nanosPerToken;
+	private final long burstNanos;
+	private final int maxClients;
+	private final Ticker ticker;
+	private final Cache<String, AtomicLong> buckets;
+	private final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * @param capacity largest cost a client may spend at once
+	 * @param refillPerSecond cost credited back to every client per second
+	 */
+	public ClientBudgets(long capacity, long refillPerSecond, int maxClients) {
+		this(capacity, refillPerSecond, maxClients, Ticker.systemTicker());
+	}
+
+	ClientBudgets(long capacity, long refillPerSecond, int maxClients, Ticker ticker) {
+		this.capacity = capacity;
+		this.refillPerSecond = refillPerSecond;
+		this.nanosPerToken = Math.max(1, TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+		this.burstNanos = capacity * nanosPerToken;
+		this.maxClients = maxClients;
+		this.ticker = ticker;
+		this.buckets = CacheBuilder.newBuilder()
+				.expireAfterAccess(burstNanos, TimeUnit.NANOSECONDS)
+				.ticker(ticker)
+				.build();
+	}
+
+	/**
+	 * Takes the cost from the client's bucket if it holds enough, otherwise leaves the bucket untouched.
+	 */
+	public Charge charge(String client, int cost) {
+		long now = ticker.read();
+		AtomicLong bucket = buckets.getIfPresent(client);
+		if (bucket == null) {
+			bucket = newBucket(client);
+		}
+		long price = cost * nanosPerToken;
+		while (true) {
+			long fullAt = bucket.get();
+			long start = Math.max(fullAt, now);
+			long next = start + price;
+			if (next - now > burstNanos) {
+				return new Charge(false, cost, tokens(now + burstNanos - start), next - now - burstNanos);
+			}
+			if (bucket.compareAndSet(fullAt, next)) {
+				return new Charge(true, cost, tokens(now + burstNanos - next), 0);
+			}
+		}
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public long getRefillPerSecond() {
+		return refillPerSecond;
+	}
+
+	/**
+	 * @return clients with a bucket that may not be full yet, not counting those sharing the overflow bucket
+	 */
+	public long size() {
+		return buckets.size();
+	}
+
+	private AtomicLong newBucket(String client) {
+		if (buckets.size() >= maxClients) {
+			// expired buckets are otherwise only dropped along with later reads and writes
+			buckets.cleanUp();
+			if (buckets.size() >= maxClients) {
+				return overflow;
+			}
+		}
+		return buckets.asMap().computeIfAbsent(client, key -> new AtomicLong(Long.MIN_VALUE));
+	}
+
+	private long tokens(long nanos) {
+		return Math.max(0, nanos / nanosPerToken);
+	}
+
+	/**
+	 * Outcome of charging a client's bucket.
+	 */
+	public static final class Charge {
+		private final boolean admitted;
+		private final int cost;
+		private final long remaining;
+		private final long retryAfterNanos;
+
+		Charge(boolean admitted, int cost, long remaining, long retryAfterNanos) {
+			this.admitted = admitted;
+			this.cost = cost;
+			this.remaining = remaining;
+			this.retryAfterNanos = retryAfterNanos;
+		}
+
+		public boolean isAdmitted() {
+			return admitted;
+		}
+
+		public int getCost() {
+			return cost;
+		}
+
+		/**
+		 * @return budget left in the bucket after this charge
+		 */
+		public long getRemaining() {
+			return remaining;
+		}
+
+		/**
+		 * @return whole seconds until the bucket holds the cost again, 0 if admitted
+		 */
+		public long getRetryAfterSeconds() {
+			return (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+		}
+	}
+}
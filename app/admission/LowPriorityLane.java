@@ -0,0 +1,106 @@
+package admission;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most {@code concurrency} operations at once and queues up to {@code queueSize} more, in
+ * arrival order. An operation holds its slot until the future it returns completes.
+ */
+class LowPriorityLane {
+
+	private final int concurrency;
+	private final int queueSize;
+	private final Semaphore slots;
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final LongAdder shed = new LongAdder();
+
+	LowPriorityLane(int concurrency, int queueSize) {
+		this.concurrency = concurrency;
+		this.queueSize = queueSize;
+		this.slots = new Semaphore(concurrency);
+	}
+
+	/**
+	 * @param executor runs the operation once it has a slot
+	 * @return the operation's result, or a future failed with a {@link RejectedExecutionException} if the
+	 *         queue is full
+	 */
+	<T> CompletableFuture<T> submit(Executor executor, Supplier<CompletableFuture<T>> operation) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		if (queued.incrementAndGet() > queueSize) {
+			queued.decrementAndGet();
+			shed.increment();
+			result.completeExceptionally(new RejectedExecutionException(
+					"Low priority queue full (" + queueSize + " operations)"));
+			return result;
+		}
+		pending.add(() -> {
+			try {
+				executor.execute(() -> run(operation, result));
+			} catch (RejectedExecutionException e) {
+				release();
+				result.completeExceptionally(e);
+			}
+		});
+		drain();
+		return result;
+	}
+
+	private <T> void run(Supplier<CompletableFuture<T>> operation, CompletableFuture<T> result) {
+		try {
+			operation.get().whenComplete((value, t) -> {
+				release();
+				if (t != null) {
+					result.completeExceptionally(t);
+				} else {
+					result.complete(value);
+				}
+			});
+		} catch (RuntimeException e) {
+			release();
+			result.completeExceptionally(e);
+		}
+	}
+
+	int getRunning() {
+		return concurrency - slots.availablePermits();
+	}
+
+	int getQueued() {
+		return queued.get();
+	}
+
+	long getShed() {
+		return shed.sum();
+	}
+
+	private void release() {
+		slots.release();
+		drain();
+	}
+
+	/**
+	 * Starts queued operations while there are free slots. Whoever frees a slot or queues an operation
+	 * drains, so an operation queued while all slots were taken is started by the next release.
+	 */
+	private void drain() {
+		while (!pending.isEmpty() && slots.tryAcquire()) {
+			Runnable next = pending.poll();
+			if (next == null) {
+				slots.release();
+				continue;
+			}
+			queued.decrementAndGet();
+			next.run();
+		}
+	}
+}
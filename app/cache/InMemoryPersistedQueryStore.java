@@ -0,0 +1,33 @@
+package cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import play.Configuration;
+
+/**
+ * {@link PersistedQueryStore} kept on the heap, bounded by {@code graphql.persistedQueries.maxEntries}.
+ */
+@Singleton
+public class InMemoryPersistedQueryStore implements PersistedQueryStore {
+
+	private final Cache<String, String> queries;
+
+	@Inject
+	public InMemoryPersistedQueryStore(Configuration configuration) {
+		this.queries = CacheBuilder.newBuilder()
+				.maximumSize(configuration.getLong("graphql.persistedQueries.maxEntries", 10000L))
+				.build();
+	}
+
+	@Override
+	public String get(String sha256Hash) {
+		return queries.getIfPresent(sha256Hash.toLowerCase());
+	}
+
+	@Override
+	public void put(String sha256Hash, String query) {
+		queries.put(sha256Hash.toLowerCase(), query);
+	}
+}
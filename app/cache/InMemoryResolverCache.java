@@ -0,0 +1,192 @@
+package cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValue;
+import common.HashCodeUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+
+/**
+ * {@link ResolverCache} kept on the heap, one Guava cache per type.
+ * <p>
+ * Entries hold the future of the load rather than its value, so a concurrent miss on a key being
+ * loaded joins that load. Each type expires after {@code graphql.resolverCache.ttl.<Type>}, or
+ * {@code graphql.resolverCache.defaultTtl}; a time to live of zero disables caching for the type.
+ * Failed loads are not cached. The hit ratio of every type is published as a gauge.
+ */
+@Singleton
+public class InMemoryResolverCache implements ResolverCache {
+
+	private final GraphQLMetrics metrics;
+	private final long maxEntries;
+	private final long defaultTtlMillis;
+	private final Map<String, Long> ttlMillis = new HashMap<>();
+	private final ConcurrentMap<String, Cache<Key, CompletableFuture<Object>>> caches = new ConcurrentHashMap<>();
+
+	@Inject
+	public InMemoryResolverCache(Configuration configuration, GraphQLMetrics metrics) {
+		this.metrics = metrics;
+		this.maxEntries = configuration.getLong("graphql.resolverCache.maxEntries", 10000L);
+		this.defaultTtlMillis = configuration.getMilliseconds("graphql.resolverCache.defaultTtl", 0L);
+		Configuration ttl = configuration.getConfig("graphql.resolverCache.ttl");
+		if (ttl != null) {
+			Config ttls = ttl.underlying();
+			for (Map.Entry<String, ConfigValue> entry : ttls.entrySet()) {
+				ttlMillis.put(entry.getKey(), ttls.getDuration(entry.getKey(), TimeUnit.MILLISECONDS));
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <K, V> CompletableFuture<List<V>> loadMany(String type, List<K> ids, String argumentHash,
+			Function<List<K>, CompletionStage<List<V>>> loader) {
+
+		Cache<Key, CompletableFuture<Object>> cache = cache(type);
+		if (cache == null) {
+			return apply(loader, ids);
+		}
+
+		List<CompletableFuture<Object>> futures = new ArrayList<>(ids.size());
+		List<K> missing = new ArrayList<>();
+		List<CompletableFuture<Object>> loading = new ArrayList<>();
+		for (K id : ids) {
+			Key key = new Key(id, argumentHash);
+			CompletableFuture<Object> future = cache.getIfPresent(key);
+			if (future == null) {
+				CompletableFuture<Object> created = new CompletableFuture<>();
+				future = cache.asMap().putIfAbsent(key, created);
+				if (future == null) {
+					future = created;
+					missing.add(id);
+					loading.add(created);
+					created.whenComplete((value, e) -> {
+						if (e != null) {
+							cache.asMap().remove(key, created);
+						}
+					});
+				}
+			}
+			futures.add(future);
+		}
+
+		if (!missing.isEmpty()) {
+			apply(loader, missing).whenComplete((values, e) -> {
+				for (int i = 0; i < loading.size(); i++) {
+					if (e != null) {
+						loading.get(i).completeExceptionally(e);
+					} else {
+						loading.get(i).complete(values.get(i));
+					}
+				}
+			});
+		}
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+				.thenApply(done -> {
+					List<V> values = new ArrayList<>(futures.size());
+					for (CompletableFuture<Object> future : futures) {
+						values.add((V) future.join());
+					}
+					return values;
+				});
+	}
+
+	/**
+	 * Calls the loader, turning an exception it throws into a failed future.
+	 */
+	private static <K, V> CompletableFuture<List<V>> apply(Function<List<K>, CompletionStage<List<V>>> loader,
+			List<K> ids) {
+		try {
+			return loader.apply(ids).toCompletableFuture();
+		} catch (RuntimeException e) {
+			CompletableFuture<List<V>> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	@Override
+	public void invalidate(String type, Set<?> ids) {
+		Cache<Key, CompletableFuture<Object>> cache = caches.get(type);
+		if (cache != null && !ids.isEmpty()) {
+			cache.asMap().keySet().removeIf(key -> ids.contains(key.id));
+		}
+	}
+
+	@Override
+	public void invalidateAll(String type) {
+		Cache<Key, CompletableFuture<Object>> cache = caches.get(type);
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * @return the cache of the type, null if the type is not cached
+	 */
+	private Cache<Key, CompletableFuture<Object>> cache(String type) {
+		long ttl = ttlMillis.getOrDefault(type, defaultTtlMillis);
+		if (ttl <= 0) {
+			return null;
+		}
+		Cache<Key, CompletableFuture<Object>> cache = caches.get(type);
+		if (cache == null) {
+			cache = caches.computeIfAbsent(type, name -> {
+				Cache<Key, CompletableFuture<Object>> created = CacheBuilder.newBuilder()
+						.maximumSize(maxEntries)
+						.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+						.recordStats()
+						.build();
+				metrics.gauge("graphql_resolver_cache_" + name.toLowerCase() + "_hit_ratio",
+						"Hit ratio of the resolver cache for " + name + ".", () -> created.stats().hitRate());
+				return created;
+			});
+		}
+		return cache;
+	}
+
+	private static final class Key {
+		private final Object id;
+		private final String argumentHash;
+
+		Key(Object id, String argumentHash) {
+			this.id = id;
+			this.argumentHash = argumentHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+
+			if (obj == null || !(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return Objects.equals(id, other.id) && Objects.equals(argumentHash, other.argumentHash);
+		}
+
+		@Override
+		public int hashCode() {
+			return HashCodeUtils.hashCode(id, argumentHash);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package cache;
+
+/**
+ * Server-side store for Automatic Persisted Queries, mapping a query's SHA-256 hash to its text.
+ * Implementations must be thread safe and may forget entries at any time; clients re-register
+ * a query after a {@code PersistedQueryNotFound} error.
+ */
+public interface PersistedQueryStore {
+
+	/**
+	 * @param sha256Hash lower case hex encoded SHA-256 of the query text
+	 * @return the query text, or null if the hash is unknown
+	 */
+	String get(String sha256Hash);
+
+	void put(String sha256Hash, String query);
+}
@@ -0,0 +1,25 @@
+package cache;
+
+import entity.Product;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetchingEnvironment;
+
+/**
+ * Adds a product to the {@link ProductCollector} of the execution whenever one of its fields is
+ * fetched. Every product in a response has at least one selected field, so all of them are seen.
+ * Executions without a collector as their context are left alone.
+ */
+public class ProductCollectingInstrumentation extends SimpleInstrumentation {
+
+	@Override
+	public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters) {
+		DataFetchingEnvironment env = parameters.getEnvironment();
+		Object context = env.getContext();
+		if (context instanceof ProductCollector && env.getSource() instanceof Product) {
+			((ProductCollector) context).add(((Product) env.getSource()).getId());
+		}
+		return super.beginFieldFetch(parameters);
+	}
+}
@@ -0,0 +1,25 @@
+package cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ids of the products a response is built from, so that a write of one of them evicts the
+ * response from the {@link ResponseCache}. Set as the context of an execution and filled by the
+ * {@link ProductCollectingInstrumentation} while its fields are fetched, possibly on several threads.
+ */
+public final class ProductCollector {
+
+	private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+	void add(Long id) {
+		if (id != null) {
+			ids.add(id);
+		}
+	}
+
+	public Set<Long> getIds() {
+		return Collections.unmodifiableSet(ids);
+	}
+}
@@ -0,0 +1,50 @@
+package cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Cache in front of the catalog backend for resolver results, keyed by (type, id, argument hash).
+ * <p>
+ * Implementations must be thread safe and coalesce loads: a caller missing a key that another caller
+ * is already loading waits for that load instead of calling the backend again.
+ */
+public interface ResolverCache {
+
+	/**
+	 * Returns the cached values of the given ids, calling the loader once for all ids that are missing.
+	 *
+	 * @param type the GraphQL type of the values, which selects the time to live
+	 * @param argumentHash distinguishes values of the same id fetched with different arguments, "" if none
+	 * @param loader fetches the values of the missing ids, in the order of the ids; may complete on another
+	 *            thread
+	 * @return the values, in the order of the ids
+	 */
+	<K, V> CompletableFuture<List<V>> loadMany(String type, List<K> ids, String argumentHash,
+			Function<List<K>, CompletionStage<List<V>>> loader);
+
+	default <K, V> CompletableFuture<V> load(String type, K id, String argumentHash,
+			Function<K, CompletionStage<V>> loader) {
+		return this.<K, V>loadMany(type, Collections.singletonList(id), argumentHash,
+				ids -> loader.apply(ids.get(0)).thenApply(Collections::singletonList))
+				.thenApply(values -> values.get(0));
+	}
+
+	/**
+	 * Evicts every entry of the id, whatever its arguments.
+	 */
+	default void invalidate(String type, Object id) {
+		invalidate(type, Collections.singleton(id));
+	}
+
+	/**
+	 * Evicts every entry of the ids, whatever their arguments, in one pass over the type.
+	 */
+	void invalidate(String type, Set<?> ids);
+
+	void invalidateAll(String type);
+}
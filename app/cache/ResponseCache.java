@@ -0,0 +1,229 @@
+package cache;
+
+import akka.util.ByteString;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import graphql.language.AstPrinter;
+import graphql.language.Document;
+import graphql.schema.GraphQLSchema;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import schema.CacheControl;
+
+/**
+ * Cache of serialized GraphQL responses, in front of execution.
+ * <p>
+ * The key is the query document reprinted by {@link AstPrinter}, so whitespace, commas and comments do
+ * not matter, together with the operation name, the variables with sorted keys and the schema version.
+ * Field order is left as is since it decides the order of the response. A response is kept for the
+ * {@code @cacheControl} maxAge of the query, and only if that is positive; the caller must not offer
+ * responses with errors. Enabled with {@code graphql.responseCache.enabled}.
+ * <p>
+ * Responses are indexed by the ids of the products they were built from, see {@link ProductCollector},
+ * so that a write evicts only the responses of the products it changed. A response whose execution
+ * overlapped a write is not cached, since it may have read the old values.
+ */
+@Singleton
+public class ResponseCache {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+	private final boolean enabled;
+	/** Query texts reprinted by {@link AstPrinter}. */
+	private final Cache<String, String> normalized;
+	private final Cache<String, CachedResponse> responses;
+	/** Hashes of the cached responses built from each product. */
+	private final ConcurrentMap<Long, Set<String>> byProduct = new ConcurrentHashMap<>();
+	/** Counts the invalidations, so a response can tell whether one happened while it executed. */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	@Inject
+	public ResponseCache(Configuration configuration, GraphQLMetrics metrics) {
+		this.enabled = configuration.getBoolean("graphql.responseCache.enabled", false);
+		long maxEntries = configuration.getLong("graphql.responseCache.maxEntries", 10000L);
+		this.normalized = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+		this.responses = CacheBuilder.newBuilder()
+				.maximumSize(maxEntries)
+				.recordStats()
+				.removalListener((RemovalNotification<String, CachedResponse> removed) -> {
+					// a replacing response indexed its own products already
+					if (removed.getCause() != RemovalCause.REPLACED) {
+						unindex(removed.getKey(), removed.getValue());
+					}
+				})
+				.build();
+		metrics.gauge("graphql_response_cache_hit_ratio", "Hit ratio of the whole response cache.",
+				() -> responses.stats().hitRate());
+	}
+
+	/**
+	 * @param query the query text, under which the reprinted document is cached
+	 * @param document the parsed query, null if it does not parse or validate
+	 * @return the key of the request, null if its response cannot be cached because the cache is
+	 *         disabled or the query is invalid
+	 */
+	public Key key(long schemaVersion, String query, Document document, String operationName,
+			Map<String, Object> variables) {
+		if (!enabled || document == null) {
+			return null;
+		}
+		long invalidationsBefore = invalidations.get();
+		String normalizedQuery = normalized.getIfPresent(query);
+		if (normalizedQuery == null) {
+			normalizedQuery = AstPrinter.printAst(document);
+			normalized.put(query, normalizedQuery);
+		}
+		String variablesJson;
+		try {
+			variablesJson = MAPPER.writeValueAsString(variables == null ? Collections.emptyMap() : variables);
+		} catch (JsonProcessingException e) {
+			return null;
+		}
+		String hash = Hashing.sha256().newHasher()
+				.putLong(schemaVersion)
+				.putString(operationName == null ? "" : operationName, StandardCharsets.UTF_8)
+				.putChar('\0')
+				.putString(normalizedQuery, StandardCharsets.UTF_8)
+				.putChar('\0')
+				.putString(variablesJson, StandardCharsets.UTF_8)
+				.hash().toString();
+		return new Key(hash, document, operationName, variables == null ? Collections.emptyMap() : variables,
+				invalidationsBefore);
+	}
+
+	/**
+	 * @return the cached response, null if there is none or it expired
+	 */
+	public CachedResponse get(Key key) {
+		CachedResponse cached = responses.getIfPresent(key.hash);
+		if (cached != null && cached.getMaxAge() <= 0) {
+			responses.asMap().remove(key.hash, cached);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Caches an error free response for the maxAge of its query.
+	 *
+	 * @param productIds the products the response was built from
+	 * @return the cached response, null if the query must not be cached or a write happened since the
+	 *         key was taken
+	 */
+	public CachedResponse put(Key key, GraphQLSchema schema, ByteString body, Set<Long> productIds) {
+		int maxAge = CacheControl.maxAge(schema, key.document, key.operationName, key.variables);
+		if (maxAge <= 0 || invalidations.get() != key.invalidationsBefore) {
+			return null;
+		}
+		String etag = "\"" + Hashing.sha256().hashBytes(body.toArray()).toString() + "\"";
+		CachedResponse cached = new CachedResponse(body, etag,
+				System.nanoTime() + TimeUnit.SECONDS.toNanos(maxAge), new HashSet<>(productIds));
+		for (Long id : cached.productIds) {
+			byProduct.computeIfAbsent(id, product -> ConcurrentHashMap.newKeySet()).add(key.hash);
+		}
+		responses.put(key.hash, cached);
+		// an invalidation since the check above may have missed the index entries just added
+		if (invalidations.get() != key.invalidationsBefore) {
+			responses.asMap().remove(key.hash, cached);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Drops the cached responses built from any of the products.
+	 */
+	public void invalidate(Set<Long> productIds) {
+		invalidations.incrementAndGet();
+		for (Long id : productIds) {
+			Set<String> hashes = byProduct.remove(id);
+			if (hashes != null) {
+				responses.invalidateAll(hashes);
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached response.
+	 */
+	public void invalidateAll() {
+		invalidations.incrementAndGet();
+		responses.invalidateAll();
+	}
+
+	private void unindex(String hash, CachedResponse cached) {
+		for (Long id : cached.productIds) {
+			byProduct.computeIfPresent(id, (product, hashes) -> {
+				hashes.remove(hash);
+				return hashes.isEmpty() ? null : hashes;
+			});
+		}
+	}
+
+	public static final class Key {
+		private final String hash;
+		private final Document document;
+		private final String operationName;
+		private final Map<String, Object> variables;
+		private final long invalidationsBefore;
+
+		Key(String hash, Document document, String operationName, Map<String, Object> variables,
+				long invalidationsBefore) {
+			this.hash = hash;
+			this.document = document;
+			this.operationName = operationName;
+			this.variables = variables;
+			this.invalidationsBefore = invalidationsBefore;
+		}
+	}
+
+	public static final class CachedResponse {
+		private final ByteString body;
+		private final String etag;
+		private final long expiresAtNanos;
+		private final Set<Long> productIds;
+
+		CachedResponse(ByteString body, String etag, long expiresAtNanos, Set<Long> productIds) {
+			this.body = body;
+			this.etag = etag;
+			this.expiresAtNanos = expiresAtNanos;
+			this.productIds = productIds;
+		}
+
+		public ByteString getBody() {
+			return body;
+		}
+
+		/**
+		 * @return the quoted entity tag of the body
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		/**
+		 * @return seconds left until the response expires
+		 */
+		public long getMaxAge() {
+			return TimeUnit.NANOSECONDS.toSeconds(expiresAtNanos - System.nanoTime());
+		}
+	}
+}
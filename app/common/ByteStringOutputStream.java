@@ -0,0 +1,33 @@
+package common;
+
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import java.io.OutputStream;
+
+/**
+ * OutputStream collecting everything written to it into a {@link ByteString}.
+ * <p>
+ * Each write is copied once into its own segment and the segments are joined without further copies,
+ * so a writer flushing a reused buffer (as Jackson's generators do with their recycled buffers) allocates
+ * about one byte per byte of output.
+ */
+public class ByteStringOutputStream extends OutputStream {
+
+	private final ByteStringBuilder builder = new ByteStringBuilder();
+
+	@Override
+	public void write(int b) {
+		builder.putByte((byte) b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		if (length > 0) {
+			builder.append(ByteString.fromArray(bytes, offset, length));
+		}
+	}
+
+	public ByteString toByteString() {
+		return builder.result();
+	}
+}
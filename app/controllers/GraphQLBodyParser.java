@@ -0,0 +1,67 @@
+package controllers;
+
+import akka.util.ByteIterator;
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.inject.Inject;
+import controllers.GraphQLController.GraphQLBatch;
+import controllers.GraphQLController.GraphQLRequest;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import play.Configuration;
+import play.http.HttpErrorHandler;
+import play.mvc.BodyParser;
+import play.mvc.Http;
+
+/**
+ * Binds the GraphQL operations straight from the raw request bytes with a streaming Jackson parser,
+ * without building an intermediate JsonNode tree. The body is either one operation or a JSON array of
+ * operations. Bodies sent as {@code application/graphql} are taken as the query text. Bodies larger than
+ * {@code graphql.request.maxBodySize} are rejected with 413.
+ */
+public class GraphQLBodyParser extends BodyParser.BufferingBodyParser<GraphQLBatch> {
+
+	static final String CONTENT_TYPE_GRAPHQL = "application/graphql";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader READER = MAPPER.readerFor(GraphQLRequest.class);
+	private static final ObjectReader BATCH_READER = MAPPER.readerFor(GraphQLRequest[].class);
+
+	@Inject
+	public GraphQLBodyParser(Configuration configuration, HttpErrorHandler errorHandler) {
+		super(configuration.getBytes("graphql.request.maxBodySize", 1024L * 1024L), errorHandler,
+				"Error decoding GraphQL request body");
+	}
+
+	@Override
+	protected GraphQLBatch parse(Http.RequestHeader request, ByteString bytes) throws Exception {
+		return read(request.getHeader(Http.HeaderNames.CONTENT_TYPE), bytes);
+	}
+
+	static GraphQLBatch read(String contentType, ByteString bytes) throws IOException {
+		if (contentType != null && contentType.startsWith(CONTENT_TYPE_GRAPHQL)) {
+			GraphQLRequest graphQLRequest = new GraphQLRequest();
+			graphQLRequest.setQuery(bytes.utf8String());
+			return new GraphQLBatch(Collections.singletonList(graphQLRequest), false);
+		}
+		if (isArray(bytes)) {
+			GraphQLRequest[] graphQLRequests = BATCH_READER.readValue(bytes.iterator().asInputStream());
+			return new GraphQLBatch(Arrays.asList(graphQLRequests), true);
+		}
+		GraphQLRequest graphQLRequest = READER.readValue(bytes.iterator().asInputStream());
+		return new GraphQLBatch(Collections.singletonList(graphQLRequest), false);
+	}
+
+	private static boolean isArray(ByteString bytes) {
+		ByteIterator iterator = bytes.iterator();
+		while (iterator.hasNext()) {
+			byte b = iterator.getByte();
+			if (!Character.isWhitespace(b)) {
+				return b == '[';
+			}
+		}
+		return false;
+	}
+}
@@ -1,42 +1,71 @@
 package controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import admission.AdmissionControl;
+import admission.ClientBudgets.Charge;
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import cache.PersistedQueryStore;
+import cache.ProductCollector;
+import cache.ResponseCache;
+import cache.ResponseCache.CachedResponse;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
+import common.ByteStringOutputStream;
+import exception.CatalogException;
 import graphql.ErrorType;
 import graphql.ExceptionWhileDataFetching;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 import graphql.GraphQL;
 import graphql.GraphQLError;
 import graphql.InvalidSyntaxError;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
 import graphql.language.SourceLocation;
 import graphql.schema.GraphQLSchema;
-import graphql.schema.PropertyDataFetcher;
-import graphql.schema.idl.RuntimeWiring;
-import graphql.schema.idl.SchemaGenerator;
-import graphql.schema.idl.TypeDefinitionRegistry;
-import graphql.schema.idl.TypeRuntimeWiring;
 import graphql.validation.ValidationError;
-import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.dataloader.DataLoaderRegistry;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import play.Configuration;
 import play.Logger;
 import play.Logger.ALogger;
+import play.http.HttpEntity;
 import play.libs.concurrent.HttpExecutionContext;
+import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Result;
-import resolvers.ProductDataFetcher;
+import resolvers.ResolverExecutor;
+import schema.CacheControl;
+import schema.DeferredPathsInstrumentation;
+import schema.GraphQLEngine;
+import schema.GraphQLProvider;
 
 /**
  * The servlet/controller acting as the GraphQL endpoint
@@ -47,95 +76,542 @@ public class GraphQLController extends Controller {
 	private static final ObjectMapper MAPPER = new ObjectMapper();
 	private static final String SERVER_ERROR = "INTERNAL_SERVER_EXCEPTION";
 	private static final String CONTENT_TYPE_APPLICATION_OR_JSON_CHARSET = "application/json";
+	private static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+	private static final String PERSISTED_QUERY_NOT_FOUND_CODE = "PERSISTED_QUERY_NOT_FOUND";
+	private static final String QUERY_LIMIT_EXCEEDED = "QUERY_LIMIT_EXCEEDED";
+	private static final String BAD_USER_INPUT = "BAD_USER_INPUT";
+	private static final String SERVER_BUSY = "SERVER_BUSY";
+	private static final String RATE_LIMITED = "RATE_LIMITED";
+	private static final String OPERATION_NOT_ALLOWED = "OPERATION_NOT_ALLOWED";
+	/** Incremental delivery of @defer results: one JSON part per payload, ended by "-----". */
+	private static final String MULTIPART_MIXED = "multipart/mixed";
+	private static final String MULTIPART_CONTENT_TYPE = MULTIPART_MIXED + "; boundary=\"-\"; deferSpec=20220824";
+	private static final ByteString MULTIPART_PART_HEADER = ByteString.fromString(
+			"\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n");
+	private static final ByteString MULTIPART_END = ByteString.fromString("\r\n-----\r\n");
+	/** Request header that opts a single request into Apollo tracing, e.g. {@code X-GraphQL-Trace: 1}. */
+	private static final String TRACE_HEADER = "X-GraphQL-Trace";
+
+	@Inject
+	private GraphQLProvider graphQLProvider;
+
+	@Inject
+	private PersistedQueryStore persistedQueryStore;
 
-	private GraphQLSchema schema;
-	
 	@Inject
-	private ProductDataFetcher productDataFetcher;
+	private ResponseCache responseCache;
+
+	@Inject
+	private ResolverExecutor resolverExecutor;
+
+	@Inject
+	private AdmissionControl admissionControl;
 
 	@Inject
 	private HttpExecutionContext ec;
 	
-	public CompletionStage<Result> postHandler() throws IOException {
-		
-		this.schema = buildSchema();
-		JsonNode body = request().body().asJson();
-		
-		if (body == null) {
-			logger.error("Query missing in request body "+request().path());
-			return CompletableFuture.completedFuture(badRequest("Query missing in request body "+request().path()));
+	@Inject
+	private Configuration configuration;
+	
+	@BodyParser.Of(GraphQLBodyParser.class)
+	public CompletionStage<Result> postHandler() {
+
+		GraphQLBatch batch = request().body().as(GraphQLBatch.class);
+		if (!batch.isBatched()) {
+			return execute(batch.getRequests().get(0));
 		}
-		GraphQLRequest graphQLRequest = MAPPER.readValue(body.traverse(), GraphQLRequest.class);
-		
+		return executeBatch(batch.getRequests());
+	}
+
+	/**
+	 * GET endpoint for cacheable queries, mostly used with a persisted query hash only. Mutations and
+	 * subscriptions are answered 405, since a GET must not change anything.
+	 */
+	public CompletionStage<Result> getHandler() throws IOException {
+
+		GraphQLRequest graphQLRequest = new GraphQLRequest();
+		graphQLRequest.setQuery(request().getQueryString("query"));
+		graphQLRequest.setOperationName(request().getQueryString("operationName"));
+		graphQLRequest.setVariables(readQueryParameter("variables"));
+		graphQLRequest.setExtensions(readQueryParameter("extensions"));
+
+		return execute(graphQLRequest);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> readQueryParameter(String name) throws IOException {
+		String value = request().getQueryString(name);
+		return value == null || value.isEmpty() ? null : MAPPER.readValue(value, Map.class);
+	}
+
+	private CompletionStage<Result> execute(GraphQLRequest graphQLRequest) {
+
+		GenericGraphQLError error = resolveQuery(graphQLRequest);
+		if (error != null) {
+			int status = PERSISTED_QUERY_NOT_FOUND.equals(error.getMessage()) ? OK : BAD_REQUEST;
+			return CompletableFuture.completedFuture(status(status, MAPPER.<JsonNode>valueToTree(errorResult(error))));
+		}
+		// parsed once: the method check, the response cache key, the cost and the execution share it
+		GraphQLEngine engine = graphQLProvider.current();
+		ExecutionInput input = newExecutionInput(graphQLRequest);
+		Document document = document(engine, input);
+		if ("GET".equals(request().method()) && !isQuery(document, graphQLRequest.getOperationName())) {
+			error = new GenericGraphQLError("Only queries can be sent with GET, use POST", OPERATION_NOT_ALLOWED);
+			return CompletableFuture.completedFuture(status(METHOD_NOT_ALLOWED,
+					MAPPER.<JsonNode>valueToTree(errorResult(error))).withHeader(ALLOW, "POST"));
+		}
+
+		boolean traced = isTraced();
+		// traced responses carry timings of their own execution
+		ResponseCache.Key cacheKey = traced ? null : responseCache.key(engine.getVersion(), graphQLRequest.getQuery(),
+				document, graphQLRequest.getOperationName(), graphQLRequest.getVariables());
+		if (cacheKey != null) {
+			CachedResponse cached = responseCache.get(cacheKey);
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cachedResult(cached));
+			}
+		}
+		if (resolverExecutor.isSaturated()) {
+			return CompletableFuture.completedFuture(serverBusy());
+		}
+
+		ProductCollector products = new ProductCollector();
+		ExecutionInput executionInput = input.transform(builder -> builder
+				.dataLoaderRegistry(graphQLProvider.newDataLoaderRegistry())
+				.context(products));
+		int cost = admissionControl.cost(engine, document, executionInput);
+		Charge charge = admissionControl.charge(clientId(), cost);
+		if (!charge.isAdmitted()) {
+			return CompletableFuture.completedFuture(overBudget(charge));
+		}
+		return admissionControl.run(cost, ec.current(), () -> query(engine, executionInput, traced, cacheKey, products))
+				.exceptionally(this::shed);
+	}
+
+	/**
+	 * Runs the operations of a batch concurrently against the same engine and data loaders, so loads are
+	 * deduplicated across operations. A failing operation gets its own errors, the others are unaffected.
+	 */
+	private CompletionStage<Result> executeBatch(List<GraphQLRequest> requests) {
+
+		int maxBatchSize = configuration.getInt("graphql.batch.maxSize", 20);
+		if (requests.size() > maxBatchSize) {
+			GenericGraphQLError error = new GenericGraphQLError("Batch of " + requests.size()
+					+ " operations exceeds the maximum of " + maxBatchSize, BAD_USER_INPUT);
+			return CompletableFuture.completedFuture(badRequest(MAPPER.<JsonNode>valueToTree(errorResult(error))));
+		}
+		if (resolverExecutor.isSaturated()) {
+			return CompletableFuture.completedFuture(serverBusy());
+		}
+
+		GraphQLEngine engine = graphQLProvider.current();
+		DataLoaderRegistry dataLoaderRegistry = graphQLProvider.newDataLoaderRegistry();
+		Executor executor = ec.current();
+		GraphQL graphQL = engine.getGraphQL(isTraced());
+
+		// a batch is charged and queued as a whole, at the sum of its operations' costs
+		List<GenericGraphQLError> errors = new ArrayList<>(requests.size());
+		List<ExecutionInput> executionInputs = new ArrayList<>(requests.size());
+		int cost = 0;
+		for (GraphQLRequest graphQLRequest : requests) {
+			GenericGraphQLError error = resolveQuery(graphQLRequest);
+			ExecutionInput executionInput = error == null ? newExecutionInput(graphQLRequest)
+					.transform(builder -> builder.dataLoaderRegistry(dataLoaderRegistry)) : null;
+			if (executionInput != null) {
+				cost += admissionControl.cost(engine, document(engine, executionInput), executionInput);
+			}
+			errors.add(error);
+			executionInputs.add(executionInput);
+		}
+		Charge charge = admissionControl.charge(clientId(), cost);
+		if (!charge.isAdmitted()) {
+			return CompletableFuture.completedFuture(overBudget(charge));
+		}
+		return admissionControl.run(cost, executor, () -> executeAll(engine, graphQL, errors, executionInputs, executor))
+				.exceptionally(this::shed);
+	}
+
+	/**
+	 * @param errors per operation, the error to answer instead of running it, or null
+	 * @param executionInputs per operation, the input to run, or null
+	 */
+	private CompletableFuture<Result> executeAll(GraphQLEngine engine, GraphQL graphQL, List<GenericGraphQLError> errors,
+			List<ExecutionInput> executionInputs, Executor executor) {
+
+		List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>(errors.size());
+		for (int i = 0; i < errors.size(); i++) {
+			if (errors.get(i) != null) {
+				results.add(CompletableFuture.completedFuture(errorResult(errors.get(i))));
+				continue;
+			}
+			ExecutionInput executionInput = executionInputs.get(i);
+			results.add(CompletableFuture.supplyAsync(() -> graphQL.executeAsync(executionInput), executor)
+					.thenCompose(Function.identity())
+					.handle((result, exce) -> {
+						if (exce != null) {
+							logger.error("Error while executing the batched query " + exce);
+							return errorResult(new GenericGraphQLError("INTERNAL_SERVER_ERROR", SERVER_ERROR));
+						}
+						return createResultFromDataAndErrors(result, engine);
+					}));
+		}
+
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+				.thenApplyAsync(done -> jsonResult(results.stream()
+						.map(CompletableFuture::join)
+						.collect(Collectors.toList())), executor);
+	}
+
+	/**
+	 * Resolves a persisted query hash to the query text, registering the query when it comes with the hash.
+	 *
+	 * @return the error to report for this operation, or null when it has a query to run
+	 */
+	private GenericGraphQLError resolveQuery(GraphQLRequest graphQLRequest) {
+
+		String hash = graphQLRequest.getPersistedQueryHash();
+		if (hash != null) {
+			if (graphQLRequest.getQuery() == null) {
+				String query = persistedQueryStore.get(hash);
+				if (query == null) {
+					return new GenericGraphQLError(PERSISTED_QUERY_NOT_FOUND, PERSISTED_QUERY_NOT_FOUND_CODE);
+				}
+				graphQLRequest.setQuery(query);
+			} else if (hash.equalsIgnoreCase(sha256(graphQLRequest.getQuery()))) {
+				persistedQueryStore.put(hash, graphQLRequest.getQuery());
+			} else {
+				return new GenericGraphQLError("provided sha does not match query", BAD_USER_INPUT);
+			}
+		}
+		if (graphQLRequest.getQuery() == null) {
+			logger.error("Query missing in request "+request().path());
+			return new GenericGraphQLError("Query missing in request "+request().path(), BAD_USER_INPUT);
+		}
+		return null;
+	}
+
+	/**
+	 * Parses and validates the query, or finds it in the engine's document cache, where the execution
+	 * finds it again.
+	 *
+	 * @return the document, null if the query is invalid; the execution reports why
+	 */
+	private static Document document(GraphQLEngine engine, ExecutionInput executionInput) {
+		PreparsedDocumentEntry entry = engine.document(executionInput);
+		return entry.hasErrors() ? null : entry.getDocument();
+	}
+
+	/**
+	 * @param document the parsed query, null if it is invalid
+	 * @return false if the request runs a mutation or a subscription; an invalid query or one that names
+	 *         no operation counts as a query and fails in execution
+	 */
+	private static boolean isQuery(Document document, String operationName) {
+		if (document == null) {
+			return true;
+		}
+		OperationDefinition operation = CacheControl.operation(document, operationName);
+		return operation == null || operation.getOperation() == OperationDefinition.Operation.QUERY;
+	}
+
+	private boolean isTraced() {
+		String trace = request().getHeader(TRACE_HEADER);
+		return "1".equals(trace) || "true".equalsIgnoreCase(trace);
+	}
+
+	private ExecutionInput newExecutionInput(GraphQLRequest graphQLRequest) {
+
 		Map<String,Object> variables = graphQLRequest.getVariables();
         if (variables == null) {
             variables = new HashMap<>();
         }
         
-        ExecutionInput executionInput = ExecutionInput.newExecutionInput()
+        return ExecutionInput.newExecutionInput()
                 .query(graphQLRequest.getQuery())
                 .operationName(graphQLRequest.getOperationName())
                 .variables(variables)
                 .build();
-
-		return query(executionInput);
 	}
 	
-	private GraphQLSchema buildSchema() throws UnsupportedEncodingException {
-		ClassLoader classLoader = getClass().getClassLoader();
-		String path = URLDecoder.decode(classLoader.getResource("schema.graphqls").getFile(), "UTF-8");
-		TypeDefinitionRegistry typeRegistry = new graphql.schema.idl.SchemaParser().parse(new File(path));
-        RuntimeWiring runtimeWiring = buildWiring();
-        SchemaGenerator schemaGenerator = new SchemaGenerator();
-        return schemaGenerator.makeExecutableSchema(typeRegistry, runtimeWiring);
+	private static String sha256(String query) {
+		return Hashing.sha256().hashString(query, StandardCharsets.UTF_8).toString();
 	}
-	
-	private RuntimeWiring buildWiring() {
-		PropertyDataFetcher.clearReflectionCache();
-		return RuntimeWiring.newRuntimeWiring()
-                .type(TypeRuntimeWiring.newTypeWiring("Query")
-                        .dataFetcher("productById", productDataFetcher.productById()))
-								.type(TypeRuntimeWiring.newTypeWiring("Product")
-										.dataFetcher("details", productDataFetcher.productDetail())
-										.dataFetcher("instance", productDataFetcher.productInstance())
-										.dataFetcher("related", productDataFetcher.relatedOfferings()))
-                .build();
+
+	private Map<String, Object> errorResult(GenericGraphQLError error) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("errors", Collections.singletonList(error));
+		return result;
 	}
 
-	private GraphQL newGraphQL(GraphQLSchema schema) {
-		return GraphQL.newGraphQL(schema)
-                .build();
+	/**
+	 * Sheds the request while the resolver pool cannot take more backend calls.
+	 */
+	private Result serverBusy() {
+		GenericGraphQLError error = new GenericGraphQLError("Server busy, retry later", SERVER_BUSY);
+		return status(SERVICE_UNAVAILABLE, MAPPER.<JsonNode>valueToTree(errorResult(error)))
+				.withHeader(RETRY_AFTER, String.valueOf(resolverExecutor.getRetryAfterSeconds()));
 	}
-	
-	private CompletableFuture<Result> query(ExecutionInput executionInput) {
+
+	/**
+	 * @return the key of the client's cost budget: its API key if it sent one, its address otherwise
+	 */
+	private String clientId() {
+		String apiKey = request().getHeader(admissionControl.getApiKeyHeader());
+		return apiKey != null && !apiKey.isEmpty() ? "key:" + apiKey : "ip:" + request().remoteAddress();
+	}
+
+	/**
+	 * Rejects an operation its client cannot afford, telling the client what it has left.
+	 */
+	private Result overBudget(Charge charge) {
+		GenericGraphQLError error = new GenericGraphQLError("Query cost " + charge.getCost()
+				+ " exceeds the remaining budget of " + charge.getRemaining(), RATE_LIMITED);
+		Map<String, Object> budget = new LinkedHashMap<>();
+		budget.put("cost", charge.getCost());
+		budget.put("remaining", charge.getRemaining());
+		budget.put("capacity", admissionControl.getBudgets().getCapacity());
+		budget.put("refillPerSecond", admissionControl.getBudgets().getRefillPerSecond());
+		Map<String, Object> result = errorResult(error);
+		result.put("extensions", Collections.singletonMap("budget", budget));
+		return status(TOO_MANY_REQUESTS, MAPPER.<JsonNode>valueToTree(result))
+				.withHeader(RETRY_AFTER, String.valueOf(Math.max(1, charge.getRetryAfterSeconds())));
+	}
+
+	/**
+	 * Answers an operation that failed before it could run, e.g. shed by a full low priority lane.
+	 */
+	private Result shed(Throwable t) {
+		if (ExceptionUtils.indexOfType(t, RejectedExecutionException.class) != -1) {
+			return serverBusy();
+		}
+		logger.error("Error while executing the query " + t);
+		return badRequest("INTERNAL_SERVER_ERROR");
+	}
+
+	private boolean rejectedByResolverPool(List<GraphQLError> errors) {
+		return errors.stream().anyMatch(error -> error instanceof ExceptionWhileDataFetching
+				&& ExceptionUtils.indexOfType(((ExceptionWhileDataFetching) error).getException(),
+						RejectedExecutionException.class) != -1);
+	}
+
+	private Result jsonResult(Object value) {
+		try {
+			return jsonResult(writeJson(value));
+		} catch (IOException e) {
+			logger.error("Error while parsing the execution result " + e);
+			return badRequest("Error while parsing the Graphql query execution result.");
+		}
+	}
+
+	private Result jsonResult(ByteString body) {
+		return ok().sendEntity(new HttpEntity.Strict(body, Optional.of(CONTENT_TYPE_APPLICATION_OR_JSON_CHARSET)));
+	}
+
+	/**
+	 * Serves a cached response with its ETag, or 304 when the client already has it.
+	 */
+	private Result cachedResult(CachedResponse cached) {
+		String ifNoneMatch = request().getHeader(IF_NONE_MATCH);
+		boolean notModified = false;
+		if (ifNoneMatch != null) {
+			for (String etag : ifNoneMatch.split(",")) {
+				notModified |= etag.trim().equals(cached.getEtag()) || etag.trim().equals("*");
+			}
+		}
+		Result result = notModified ? status(NOT_MODIFIED) : jsonResult(cached.getBody());
+		return result.withHeader(ETAG, cached.getEtag())
+				.withHeader(CACHE_CONTROL, "max-age=" + cached.getMaxAge());
+	}
+
+	/**
+	 * @param cacheKey response cache key of the request, null if the response must not be cached
+	 * @param products collects the products the response is built from, the context of the execution
+	 */
+	private CompletableFuture<Result> query(GraphQLEngine engine, ExecutionInput executionInput, boolean traced,
+			ResponseCache.Key cacheKey, ProductCollector products) {
 		CompletableFuture<Result> promise = new CompletableFuture<Result>();
 
-		final CompletableFuture<ExecutionResult> executionResult = newGraphQL(schema).executeAsync(executionInput);
+		final CompletableFuture<ExecutionResult> executionResult = engine.getGraphQL(traced).executeAsync(executionInput);
 		executionResult.whenCompleteAsync((result, exce) -> {
 			if (exce != null) {
 				logger.error("Error while executing the query " + exce);
 				promise.complete(badRequest("INTERNAL_SERVER_ERROR"));
 				return;
 			}
-			final List<GraphQLError> errors = result.getErrors();
-			final Object data = result.getData();
-
+			if (rejectedByResolverPool(result.getErrors())) {
+				promise.complete(serverBusy());
+				return;
+			}
+			Publisher<ExecutionResult> deferred = deferredResults(result);
+			if (deferred != null && acceptsMultipart()) {
+				// never cached: the response is only complete once the deferred parts are sent
+				promise.complete(multipartResult(result, deferred, deferredPaths(result), engine));
+				return;
+			}
+			if (deferred != null) {
+				collect(deferred).whenComplete((results, e) -> {
+					if (e != null) {
+						logger.error("Error while executing the deferred fields " + e);
+						promise.complete(badRequest("INTERNAL_SERVER_ERROR"));
+					} else {
+						promise.complete(jsonResult(createResultFromDataAndErrors(
+								merge(result, results, deferredPaths(result)), engine)));
+					}
+				});
+				return;
+			}
+			Map<String, Object> response = createResultFromDataAndErrors(result, engine);
+			if (cacheKey == null || errorsPresent(result.getErrors())) {
+				promise.complete(jsonResult(response));
+				return;
+			}
 			try {
-				promise.complete(ok(MAPPER.writeValueAsString(createResultFromDataAndErrors(data, errors)))
-						.as(CONTENT_TYPE_APPLICATION_OR_JSON_CHARSET));
-			} catch (JsonProcessingException e) {
+				ByteString body = writeJson(response);
+				CachedResponse cached = responseCache.put(cacheKey, engine.getSchema(), body, products.getIds());
+				promise.complete(cached != null ? cachedResult(cached) : jsonResult(body));
+			} catch (IOException e) {
 				logger.error("Error while parsing the execution result " + e);
 				promise.complete(badRequest("Error while parsing the Graphql query execution result."));
-				return;
 			}
 		}, ec.current());
 		return promise;
 		 
 	}
 
-    private Map<String, Object> createResultFromDataAndErrors(Object data, List<GraphQLError> errors) {
+    @SuppressWarnings("unchecked")
+    private static Publisher<ExecutionResult> deferredResults(ExecutionResult result) {
+        Object deferred = result.getExtensions() == null ? null : result.getExtensions().get(GraphQL.DEFERRED_RESULTS);
+        return deferred instanceof Publisher ? (Publisher<ExecutionResult>) deferred : null;
+    }
+
+    /**
+     * @return the paths of the deferred results, in the order they are published
+     * @see DeferredPathsInstrumentation
+     */
+    @SuppressWarnings("unchecked")
+    private static Queue<List<Object>> deferredPaths(ExecutionResult result) {
+        return (Queue<List<Object>>) result.getExtensions().get(DeferredPathsInstrumentation.DEFERRED_PATHS);
+    }
 
-        final Map<String, Object> result = new HashMap<>();
+    private boolean acceptsMultipart() {
+        String accept = request().getHeader(ACCEPT);
+        return accept != null && accept.toLowerCase().contains(MULTIPART_MIXED);
+    }
+
+    /**
+     * Sends the initial result at once as the first part of a chunked {@code multipart/mixed} response,
+     * then every @defer result as its own part as soon as it completes, in the
+     * {@code {incremental: [{data, path}], hasNext}} shape of deferSpec=20220824.
+     */
+    private Result multipartResult(ExecutionResult initial, Publisher<ExecutionResult> deferred,
+            Queue<List<Object>> paths, GraphQLEngine engine) {
+        Map<String, Object> first = createResultFromDataAndErrors(initial, engine);
+        first.put("hasNext", true);
+        Source<ByteString, NotUsed> parts = Source.single(first)
+                .concat(Source.fromPublisher(deferred).map(result -> {
+                    Map<String, Object> formatted = createResultFromDataAndErrors(result, engine);
+                    List<Object> path = paths.poll();
+                    // the data of a deferred field is its value; the increment is the object holding it
+                    Map<String, Object> incremental = new LinkedHashMap<>();
+                    incremental.put("data", path.isEmpty() ? formatted.get("data")
+                            : Collections.singletonMap(String.valueOf(path.get(path.size() - 1)), formatted.get("data")));
+                    incremental.put("path", path.isEmpty() ? path : path.subList(0, path.size() - 1));
+                    if (formatted.containsKey("errors")) {
+                        incremental.put("errors", formatted.get("errors"));
+                    }
+                    Map<String, Object> part = new LinkedHashMap<>();
+                    part.put("incremental", Collections.singletonList(incremental));
+                    part.put("hasNext", true);
+                    return part;
+                }))
+                .concat(Source.single(Collections.<String, Object>singletonMap("hasNext", false)))
+                .map(part -> MULTIPART_PART_HEADER.concat(writeJson(part)))
+                .concat(Source.single(MULTIPART_END));
+        return ok().chunked(parts).as(MULTIPART_CONTENT_TYPE);
+    }
+
+    /**
+     * @return all deferred results, once the last one completed
+     */
+    private static CompletableFuture<List<ExecutionResult>> collect(Publisher<ExecutionResult> deferred) {
+        CompletableFuture<List<ExecutionResult>> collected = new CompletableFuture<>();
+        deferred.subscribe(new Subscriber<ExecutionResult>() {
+            private final List<ExecutionResult> results = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ExecutionResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                collected.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                collected.complete(results);
+            }
+        });
+        return collected;
+    }
+
+    /**
+     * Puts the value of every deferred field into the initial data at its path, for clients that do not
+     * read multipart responses.
+     */
+    @SuppressWarnings("unchecked")
+    private static ExecutionResult merge(ExecutionResult initial, List<ExecutionResult> deferred,
+            Queue<List<Object>> paths) {
+        List<GraphQLError> errors = new ArrayList<>(initial.getErrors());
+        for (ExecutionResult result : deferred) {
+            errors.addAll(result.getErrors());
+            List<Object> path = paths.poll();
+            Object parent = initial.getData();
+            for (Object segment : path.subList(0, path.size() - 1)) {
+                if (parent instanceof Map) {
+                    parent = ((Map<String, Object>) parent).get(String.valueOf(segment));
+                } else if (parent instanceof List && segment instanceof Integer) {
+                    parent = ((List<Object>) parent).get((Integer) segment);
+                } else {
+                    parent = null;
+                }
+            }
+            if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(String.valueOf(path.get(path.size() - 1)), result.getData());
+            }
+        }
+        return new ExecutionResultImpl(initial.getData(), errors, initial.getExtensions());
+    }
+
+    /**
+     * Streams the value through a Jackson generator straight into a {@link ByteString}, without the
+     * intermediate String and byte[] copies of {@code ok(MAPPER.writeValueAsString(value))}.
+     */
+    static ByteString writeJson(Object value) throws IOException {
+        ByteStringOutputStream out = new ByteStringOutputStream();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.writeObject(value);
+        }
+        return out.toByteString();
+    }
+
+    Map<String, Object> createResultFromDataAndErrors(ExecutionResult executionResult, GraphQLEngine engine) {
+
+        final Object data = executionResult.getData();
+        if (data instanceof Publisher) {
+            // the subscription was set up but nothing will ever read it
+            return errorResult(new GenericGraphQLError(
+                    "Subscriptions are served over WebSocket at /graphql/subscriptions", BAD_USER_INPUT));
+        }
+        final List<GraphQLError> errors = executionResult.getErrors();
+        // insertion ordered so that data is written before errors
+        final Map<String, Object> result = new LinkedHashMap<>();
         result.put("data", data);
         if (errorsPresent(errors)) {
             final List<GraphQLError> clientErrors = filterGraphQLErrors(errors);
@@ -156,6 +632,18 @@ public class GraphQLController extends Controller {
             result.put("errors", clientErrors);
         }
 
+        final Map<String, Object> extensions = new LinkedHashMap<>();
+        extensions.put("schemaVersion", engine.getVersion());
+        if (executionResult.getExtensions() != null) {
+            // e.g. "tracing" when the request asked for it; deferred results are sent as parts of their own
+            executionResult.getExtensions().forEach((key, value) -> {
+                if (!GraphQL.DEFERRED_RESULTS.equals(key) && !DeferredPathsInstrumentation.DEFERRED_PATHS.equals(key)) {
+                    extensions.put(String.valueOf(key), value);
+                }
+            });
+        }
+        result.put("extensions", extensions);
+
         return result;
     }
     
@@ -166,11 +654,14 @@ public class GraphQLController extends Controller {
     protected List<GraphQLError> filterGraphQLErrors(List<GraphQLError> errors) {
         return errors.stream()
             .filter(this::isClientError)
+            .map(error -> error instanceof AbortExecutionException
+                    ? new GenericGraphQLError(error, QUERY_LIMIT_EXCEEDED) : error)
             .collect(Collectors.toList());
     }
 
     protected boolean isClientError(GraphQLError error) {
-        return error instanceof InvalidSyntaxError || error instanceof ValidationError;
+        return error instanceof InvalidSyntaxError || error instanceof ValidationError
+                || error instanceof AbortExecutionException;
     }
 
     protected Map<String, Object> transformVariables(GraphQLSchema schema, String query, Map<String, Object> variables) {
@@ -181,6 +672,7 @@ public class GraphQLController extends Controller {
         private String query;
         private Map<String, Object> variables = new HashMap<>();
         private String operationName;
+        private Map<String, Object> extensions;
 
         public String getQuery() {
             return query;
@@ -205,8 +697,49 @@ public class GraphQLController extends Controller {
         public void setOperationName(String operationName) {
             this.operationName = operationName;
         }
+
+        public Map<String, Object> getExtensions() {
+            return extensions;
+        }
+
+        public void setExtensions(Map<String, Object> extensions) {
+            this.extensions = extensions;
+        }
+
+        /**
+         * @return the Apollo APQ hash from {@code extensions.persistedQuery.sha256Hash}, if any
+         */
+        @JsonIgnore
+        public String getPersistedQueryHash() {
+            if (extensions == null || !(extensions.get("persistedQuery") instanceof Map)) {
+                return null;
+            }
+            Object hash = ((Map<?, ?>) extensions.get("persistedQuery")).get("sha256Hash");
+            return hash == null ? null : hash.toString();
+        }
     }
     
+    /**
+     * The POST body: a single operation, or a JSON array of operations answered with an array of results.
+     */
+    protected static class GraphQLBatch {
+        private final List<GraphQLRequest> requests;
+        private final boolean batched;
+
+        public GraphQLBatch(List<GraphQLRequest> requests, boolean batched) {
+            this.requests = requests;
+            this.batched = batched;
+        }
+
+        public List<GraphQLRequest> getRequests() {
+            return requests;
+        }
+
+        public boolean isBatched() {
+            return batched;
+        }
+    }
+
     protected static class GenericGraphQLError implements GraphQLError {
     	
 		private static final long serialVersionUID = 1L;
@@ -225,7 +758,13 @@ public class GraphQLController extends Controller {
     		this.path = error.getPath();
     		this.location = error.getLocations();
     		this.extentions = error.getExtensions();
-    		if (this.extentions.isEmpty()) {
+    		int catalogException = ExceptionUtils.indexOfType(error.getException(), CatalogException.class);
+    		if ((this.extentions == null || this.extentions.isEmpty()) && catalogException != -1) {
+    			// e.g. UPSTREAM_TIMEOUT, even when the exception came wrapped by a future
+    			this.extentions = ((CatalogException) ExceptionUtils.getThrowableList(error.getException())
+    					.get(catalogException)).getExtensions();
+    		}
+    		if (this.extentions == null || this.extentions.isEmpty()) {
     			this.extentions = new LinkedHashMap<>();
     			this.extentions.put("code", SERVER_ERROR);
     		}
@@ -236,6 +775,19 @@ public class GraphQLController extends Controller {
     		this.errorType = ErrorType.DataFetchingException;
     	}
 
+    	public GenericGraphQLError (GraphQLError error, String code) {
+    		this(error.getMessage(), code);
+    		this.errorType = error.getErrorType();
+    		this.location = error.getLocations();
+    		this.path = error.getPath();
+    	}
+
+    	public GenericGraphQLError (String message, String code) {
+    		this(message);
+    		this.extentions = new LinkedHashMap<>();
+    		this.extentions.put("code", code);
+    	}
+
 		@Override
 		public String getMessage() {
 			return this.message;
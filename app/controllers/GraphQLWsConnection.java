@@ -0,0 +1,281 @@
+package controllers;
+
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import play.Logger;
+import play.Logger.ALogger;
+import schema.GraphQLEngine;
+import schema.GraphQLProvider;
+
+/**
+ * Server side of one WebSocket connection speaking the graphql-ws protocol of
+ * subscriptions-transport-ws. Any number of operations run concurrently on a connection, each under
+ * the id the client started it with.
+ * <p>
+ * Outgoing messages go through a bounded queue. An operation asks its publisher for the next result
+ * only once the previous one is queued, and a connection whose queue is full is closed, so a client
+ * that does not read its socket cannot make the server buffer without bounds.
+ */
+final class GraphQLWsConnection {
+
+	static final String PROTOCOL = "graphql-ws";
+
+	static final String CONNECTION_INIT = "connection_init";
+	static final String CONNECTION_ACK = "connection_ack";
+	static final String CONNECTION_ERROR = "connection_error";
+	static final String CONNECTION_TERMINATE = "connection_terminate";
+	static final String KEEP_ALIVE = "ka";
+	static final String START = "start";
+	static final String STOP = "stop";
+	static final String DATA = "data";
+	static final String ERROR = "error";
+	static final String COMPLETE = "complete";
+
+	private static final ALogger logger = Logger.of(GraphQLWsConnection.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final GraphQLProvider graphQLProvider;
+	private final BiFunction<ExecutionResult, GraphQLEngine, Map<String, Object>> formatter;
+	private final Runnable onClose;
+	private final Runnable onSlowConsumer;
+	private final ConcurrentMap<String, Subscription> operations = new ConcurrentHashMap<>();
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private volatile SourceQueueWithComplete<String> out;
+
+	/**
+	 * @param formatter turns a result into the JSON payload, the same way as over HTTP
+	 * @param onClose called once when the connection closes
+	 * @param onSlowConsumer called when the connection is closed because its queue is full
+	 */
+	GraphQLWsConnection(GraphQLProvider graphQLProvider,
+			BiFunction<ExecutionResult, GraphQLEngine, Map<String, Object>> formatter, Runnable onClose,
+			Runnable onSlowConsumer) {
+		this.graphQLProvider = graphQLProvider;
+		this.formatter = formatter;
+		this.onClose = onClose;
+		this.onSlowConsumer = onSlowConsumer;
+	}
+
+	/**
+	 * Called with the outgoing queue once the stream of the socket is materialized, before any message
+	 * is received.
+	 */
+	void attach(SourceQueueWithComplete<String> out) {
+		this.out = out;
+	}
+
+	void onMessage(String text) {
+		JsonNode message;
+		try {
+			message = MAPPER.readTree(text);
+		} catch (IOException e) {
+			send(CONNECTION_ERROR, null, Collections.singletonMap("message", "Message is not JSON"));
+			return;
+		}
+		String id = message.path("id").asText(null);
+		switch (message.path("type").asText()) {
+		case CONNECTION_INIT:
+			send(CONNECTION_ACK, null, null);
+			break;
+		case START:
+			start(id, message.path("payload"));
+			break;
+		case STOP:
+			stop(id);
+			break;
+		case CONNECTION_TERMINATE:
+			close();
+			break;
+		default:
+			send(ERROR, id, Collections.singletonMap("message", "Unknown message type " + message.path("type")));
+		}
+	}
+
+	/**
+	 * Cancels every running operation and closes the socket.
+	 */
+	void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		operations.values().forEach(Subscription::cancel);
+		operations.clear();
+		if (out != null) {
+			out.complete();
+		}
+		onClose.run();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void start(String id, JsonNode payload) {
+		// the id is taken before execution starts, so that a second start with it is refused
+		PendingOperation pending = new PendingOperation();
+		if (id == null || operations.putIfAbsent(id, pending) != null) {
+			send(ERROR, id, Collections.singletonMap("message", "Operation id missing or already in use"));
+			return;
+		}
+		Map<String, Object> variables = payload.hasNonNull("variables")
+				? MAPPER.convertValue(payload.get("variables"), Map.class) : new HashMap<>();
+		ExecutionInput executionInput = ExecutionInput.newExecutionInput()
+				.query(payload.path("query").asText())
+				.operationName(payload.path("operationName").asText(null))
+				.variables(variables)
+				.dataLoaderRegistry(graphQLProvider.newDataLoaderRegistry())
+				.build();
+
+		GraphQLEngine engine = graphQLProvider.current();
+		engine.getGraphQL(false).executeAsync(executionInput).whenComplete((result, e) -> {
+			if (e == null && result.getData() instanceof Publisher) {
+				((Publisher<ExecutionResult>) result.getData()).subscribe(new OperationSubscriber(id, pending, engine));
+			} else if (!operations.remove(id, pending)) {
+				// stopped, or the connection closed, while executing
+				return;
+			} else if (e != null) {
+				logger.error("Error while executing the operation " + id, e);
+				send(ERROR, id, Collections.singletonMap("message", "INTERNAL_SERVER_ERROR"));
+			} else {
+				// a query or mutation: one result and done
+				send(DATA, id, formatter.apply(result, engine)).thenRun(() -> send(COMPLETE, id, null));
+			}
+		});
+	}
+
+	private void stop(String id) {
+		Subscription subscription = id == null ? null : operations.remove(id);
+		if (subscription != null) {
+			subscription.cancel();
+			send(COMPLETE, id, null);
+		}
+	}
+
+	/**
+	 * @return whether the message was queued
+	 */
+	private CompletionStage<Boolean> send(String type, String id, Object payload) {
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put("type", type);
+		if (id != null) {
+			message.put("id", id);
+		}
+		if (payload != null) {
+			message.put("payload", payload);
+		}
+		String text;
+		try {
+			text = GraphQLController.writeJson(message).utf8String();
+		} catch (IOException e) {
+			logger.error("Error while writing the " + type + " message " + e);
+			return CompletableFuture.completedFuture(false);
+		}
+		if (closed.get() || out == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		return out.offer(text).handle((result, e) -> {
+			if (QueueOfferResult.Enqueued$.MODULE$.equals(result)) {
+				return true;
+			}
+			if (QueueOfferResult.Dropped$.MODULE$.equals(result)) {
+				logger.warn("Closing a subscription connection that stopped reading");
+				onSlowConsumer.run();
+				close();
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Forwards the results of one subscription, requesting the next only once the last is queued.
+	 */
+	private final class OperationSubscriber implements Subscriber<ExecutionResult> {
+
+		private final String id;
+		private final PendingOperation pending;
+		private final GraphQLEngine engine;
+		private volatile Subscription subscription;
+
+		OperationSubscriber(String id, PendingOperation pending, GraphQLEngine engine) {
+			this.id = id;
+			this.pending = pending;
+			this.engine = engine;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+			if (!operations.replace(id, pending, subscription)) {
+				// stopped, or the connection closed, before the subscription existed
+				subscription.cancel();
+				return;
+			}
+			if (closed.get()) {
+				// lost a race with close()
+				operations.remove(id, subscription);
+				subscription.cancel();
+				return;
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(ExecutionResult result) {
+			send(DATA, id, formatter.apply(result, engine)).thenAccept(queued -> {
+				if (queued) {
+					subscription.request(1);
+				}
+			});
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if (operations.remove(id, subscription)) {
+				Map<String, Object> error = new LinkedHashMap<>();
+				error.put("message", t.getMessage());
+				if (t instanceof GraphQLError) {
+					error.put("extensions", ((GraphQLError) t).getExtensions());
+				}
+				send(ERROR, id, error);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			if (operations.remove(id, subscription)) {
+				send(COMPLETE, id, null);
+			}
+		}
+	}
+
+	/**
+	 * Holds the id of an operation from its start until its subscription exists. Stopping it only
+	 * removes it; the operation then finds its id gone.
+	 */
+	private static final class PendingOperation implements Subscription {
+
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package controllers;
+
+import com.google.inject.Inject;
+import metrics.GraphQLMetrics;
+import play.mvc.Controller;
+import play.mvc.Result;
+
+/**
+ * Exposes the GraphQL metrics for scraping by Prometheus.
+ */
+public class MetricsController extends Controller {
+
+	private static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4";
+
+	@Inject
+	private GraphQLMetrics metrics;
+
+	public Result metrics() {
+		return ok(metrics.toPrometheus()).as(CONTENT_TYPE_PROMETHEUS);
+	}
+}
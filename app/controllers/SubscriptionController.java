@@ -0,0 +1,66 @@
+package controllers;
+
+import akka.NotUsed;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import play.mvc.Controller;
+import play.mvc.WebSocket;
+import scala.concurrent.duration.FiniteDuration;
+import schema.GraphQLProvider;
+
+/**
+ * WebSocket endpoint for GraphQL subscriptions, speaking the graphql-ws protocol.
+ */
+@Singleton
+public class SubscriptionController extends Controller {
+
+	private final GraphQLProvider graphQLProvider;
+	private final GraphQLController graphQLController;
+	private final int bufferSize;
+	private final FiniteDuration keepAlive;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final LongAdder slowConnections = new LongAdder();
+
+	@Inject
+	public SubscriptionController(GraphQLProvider graphQLProvider, GraphQLController graphQLController,
+			Configuration configuration, GraphQLMetrics metrics) {
+		this.graphQLProvider = graphQLProvider;
+		this.graphQLController = graphQLController;
+		this.bufferSize = configuration.getInt("graphql.subscriptions.connectionBufferSize", 256);
+		this.keepAlive = FiniteDuration.create(
+				configuration.getMilliseconds("graphql.subscriptions.keepAlive", 15000L), TimeUnit.MILLISECONDS);
+
+		metrics.gauge("graphql_subscription_connections", "Open subscription WebSocket connections.",
+				connections::get);
+		metrics.gauge("graphql_subscription_slow_connections_closed",
+				"Subscription connections closed because their outgoing queue was full.", slowConnections::sum);
+	}
+
+	public WebSocket socket() {
+		return WebSocket.Text.accept(request -> {
+			connections.incrementAndGet();
+			GraphQLWsConnection connection = new GraphQLWsConnection(graphQLProvider,
+					graphQLController::createResultFromDataAndErrors, connections::decrementAndGet,
+					slowConnections::increment);
+
+			Sink<String, ?> in = Sink.<String>foreach(connection::onMessage)
+					.mapMaterializedValue(done -> done.whenComplete((ignored, e) -> connection.close()));
+			Source<String, NotUsed> out = Source.<String>queue(bufferSize, OverflowStrategy.dropNew())
+					.keepAlive(keepAlive, () -> "{\"type\":\"" + GraphQLWsConnection.KEEP_ALIVE + "\"}")
+					.mapMaterializedValue(queue -> {
+						connection.attach(queue);
+						return NotUsed.getInstance();
+					});
+			return Flow.fromSinkAndSource(in, out);
+		});
+	}
+}
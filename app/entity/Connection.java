@@ -0,0 +1,82 @@
+package entity;
+
+import java.util.List;
+
+/**
+ * One page of a Relay connection: the edges of the page and where it stands in the whole list.
+ */
+public class Connection<T> {
+
+	private final Long parentId;
+	private final List<Edge<T>> edges;
+	private final PageInfo pageInfo;
+
+	public Connection(Long parentId, List<Edge<T>> edges, PageInfo pageInfo) {
+		this.parentId = parentId;
+		this.edges = edges;
+		this.pageInfo = pageInfo;
+	}
+
+	/**
+	 * @return the id of the object owning the list, for resolving {@code totalCount} only when selected
+	 */
+	public Long getParentId() {
+		return parentId;
+	}
+
+	public List<Edge<T>> getEdges() {
+		return edges;
+	}
+
+	public PageInfo getPageInfo() {
+		return pageInfo;
+	}
+
+	public static class Edge<T> {
+		private final String cursor;
+		private final T node;
+
+		public Edge(String cursor, T node) {
+			this.cursor = cursor;
+			this.node = node;
+		}
+
+		public String getCursor() {
+			return cursor;
+		}
+
+		public T getNode() {
+			return node;
+		}
+	}
+
+	public static class PageInfo {
+		private final boolean hasNextPage;
+		private final boolean hasPreviousPage;
+		private final String startCursor;
+		private final String endCursor;
+
+		public PageInfo(boolean hasNextPage, boolean hasPreviousPage, String startCursor, String endCursor) {
+			this.hasNextPage = hasNextPage;
+			this.hasPreviousPage = hasPreviousPage;
+			this.startCursor = startCursor;
+			this.endCursor = endCursor;
+		}
+
+		public boolean isHasNextPage() {
+			return hasNextPage;
+		}
+
+		public boolean isHasPreviousPage() {
+			return hasPreviousPage;
+		}
+
+		public String getStartCursor() {
+			return startCursor;
+		}
+
+		public String getEndCursor() {
+			return endCursor;
+		}
+	}
+}
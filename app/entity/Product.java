@@ -21,6 +21,8 @@ public class Product {
 	private String name;
 	private Long parentId;
 	private Collection<entity.ProductDetail> details;
+	private Collection<Product> related;
+	private ProductInstance instance;
 
 	public Long getId() {
 		return id;
@@ -82,6 +84,22 @@ public class Product {
 		this.details = details;
 	}
 
+	public Collection<Product> getRelated() {
+		return related;
+	}
+
+	public void setRelated(Collection<Product> related) {
+		this.related = related;
+	}
+
+	public ProductInstance getInstance() {
+		return instance;
+	}
+
+	public void setInstance(ProductInstance instance) {
+		this.instance = instance;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
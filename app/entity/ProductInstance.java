@@ -14,6 +14,7 @@ public class ProductInstance {
 	public Long productId;
 	public String note;
 	public String name;
+	public String status;
 	public String subscribedDate;
 
 	public Long getId() {
@@ -56,6 +57,14 @@ public class ProductInstance {
 		this.name = offeringName;
 	}
 
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
 	public String getSubscribedDate() {
 		return subscribedDate;
 	}
@@ -0,0 +1,154 @@
+package metrics;
+
+import com.google.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process wide registry of GraphQL timings and gauges, rendered in the Prometheus text format.
+ * <p>
+ * Recording only touches concurrent maps and {@link LatencyHistogram}s, never a lock. Operation names
+ * come from clients, so at most {@value #MAX_OPERATIONS} distinct names are tracked; the rest are
+ * reported as {@value #OTHER_OPERATION}.
+ */
+@Singleton
+public class GraphQLMetrics {
+
+	public static final String PARSE = "parse";
+	public static final String VALIDATE = "validate";
+	public static final String EXECUTE = "execute";
+	public static final String REQUEST = "request";
+
+	static final int MAX_OPERATIONS = 500;
+	static final String ANONYMOUS_OPERATION = "anonymous";
+	static final String OTHER_OPERATION = "other";
+
+	private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+	private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> phases = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> fields = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Boolean> operations = new ConcurrentHashMap<>();
+
+	/**
+	 * @param phase one of {@link #PARSE}, {@link #VALIDATE}, {@link #EXECUTE} or {@link #REQUEST}
+	 */
+	public LatencyHistogram phase(String phase, String operationName) {
+		return histogram(phases, phase, operationLabel(operationName));
+	}
+
+	public LatencyHistogram field(String typeName, String fieldName) {
+		return histogram(fields, typeName, fieldName);
+	}
+
+	/**
+	 * Registers or replaces a gauge sampled whenever the metrics are rendered.
+	 */
+	public void gauge(String name, String help, DoubleSupplier value) {
+		gauges.put(name, new Gauge(help, value));
+	}
+
+	public String toPrometheus() {
+		StringBuilder out = new StringBuilder(4096);
+
+		out.append("# HELP graphql_phase_seconds Duration of GraphQL request phases by operation name.\n");
+		out.append("# TYPE graphql_phase_seconds summary\n");
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> phase : phases.entrySet()) {
+			for (Map.Entry<String, LatencyHistogram> operation : phase.getValue().entrySet()) {
+				String labels = "phase=\"" + escape(phase.getKey()) + "\",operation=\"" + escape(operation.getKey()) + "\"";
+				writeSummary(out, "graphql_phase_seconds", labels, operation.getValue());
+			}
+		}
+		out.append("# HELP graphql_phase_errors_total GraphQL request phases that ended with errors.\n");
+		out.append("# TYPE graphql_phase_errors_total counter\n");
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> phase : phases.entrySet()) {
+			for (Map.Entry<String, LatencyHistogram> operation : phase.getValue().entrySet()) {
+				String labels = "phase=\"" + escape(phase.getKey()) + "\",operation=\"" + escape(operation.getKey()) + "\"";
+				writeSample(out, "graphql_phase_errors_total", labels, operation.getValue().getErrorCount());
+			}
+		}
+
+		out.append("# HELP graphql_field_fetch_seconds Data fetcher latency by Type.field.\n");
+		out.append("# TYPE graphql_field_fetch_seconds summary\n");
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> type : fields.entrySet()) {
+			for (Map.Entry<String, LatencyHistogram> field : type.getValue().entrySet()) {
+				String labels = "field=\"" + escape(type.getKey() + "." + field.getKey()) + "\"";
+				writeSummary(out, "graphql_field_fetch_seconds", labels, field.getValue());
+			}
+		}
+		out.append("# HELP graphql_field_fetch_errors_total Data fetcher failures by Type.field.\n");
+		out.append("# TYPE graphql_field_fetch_errors_total counter\n");
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> type : fields.entrySet()) {
+			for (Map.Entry<String, LatencyHistogram> field : type.getValue().entrySet()) {
+				String labels = "field=\"" + escape(type.getKey() + "." + field.getKey()) + "\"";
+				writeSample(out, "graphql_field_fetch_errors_total", labels, field.getValue().getErrorCount());
+			}
+		}
+
+		for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+			out.append("# HELP ").append(gauge.getKey()).append(' ').append(gauge.getValue().help).append('\n');
+			out.append("# TYPE ").append(gauge.getKey()).append(" gauge\n");
+			writeSample(out, gauge.getKey(), null, gauge.getValue().value.getAsDouble());
+		}
+		return out.toString();
+	}
+
+	private String operationLabel(String operationName) {
+		if (operationName == null || operationName.isEmpty()) {
+			return ANONYMOUS_OPERATION;
+		}
+		if (operations.containsKey(operationName)) {
+			return operationName;
+		}
+		if (operations.size() >= MAX_OPERATIONS) {
+			return OTHER_OPERATION;
+		}
+		operations.putIfAbsent(operationName, Boolean.TRUE);
+		return operationName;
+	}
+
+	private static LatencyHistogram histogram(ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> histograms,
+			String outer, String inner) {
+		ConcurrentMap<String, LatencyHistogram> byInner = histograms.get(outer);
+		if (byInner == null) {
+			byInner = histograms.computeIfAbsent(outer, key -> new ConcurrentHashMap<>());
+		}
+		LatencyHistogram histogram = byInner.get(inner);
+		if (histogram == null) {
+			histogram = byInner.computeIfAbsent(inner, key -> new LatencyHistogram());
+		}
+		return histogram;
+	}
+
+	private static void writeSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+		for (double quantile : QUANTILES) {
+			writeSample(out, name, labels + ",quantile=\"" + quantile + "\"", histogram.getQuantileSeconds(quantile));
+		}
+		writeSample(out, name + "_sum", labels, histogram.getSumSeconds());
+		writeSample(out, name + "_count", labels, histogram.getCount());
+	}
+
+	private static void writeSample(StringBuilder out, String name, String labels, double value) {
+		out.append(name);
+		if (labels != null) {
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ').append(value).append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static final class Gauge {
+		private final String help;
+		private final DoubleSupplier value;
+
+		Gauge(String help, DoubleSupplier value) {
+			this.help = help;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Values are recorded in microseconds. Every power of two is split into {@value #SUB_BUCKETS} linear
+ * buckets, which bounds the relative error of a percentile to about 12%. Each bucket is a striped
+ * {@link LongAdder}, so concurrent writers never contend on a lock or a single cache line.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** 2^40 microseconds is about 12 days, larger values go to the last bucket. */
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumMicros = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos, boolean error) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		buckets[bucketIndex(micros)].increment();
+		count.increment();
+		sumMicros.add(micros);
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	public double getSumSeconds() {
+		return sumMicros.sum() / 1e6;
+	}
+
+	/**
+	 * @param quantile between 0 and 1
+	 * @return the upper bound of the bucket holding the quantile, in seconds; 0 if nothing was recorded
+	 */
+	public double getQuantileSeconds(double quantile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets[i].sum();
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return upperBoundMicros(i) / 1e6;
+			}
+		}
+		return upperBoundMicros(BUCKET_COUNT - 1) / 1e6;
+	}
+
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int mantissa = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	static long upperBoundMicros(int index) {
+		if (index < SUB_BUCKETS) {
+			return index + 1;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long mantissa = index % SUB_BUCKETS;
+		return (SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BUCKET_BITS);
+	}
+}
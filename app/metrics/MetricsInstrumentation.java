@@ -0,0 +1,137 @@
+package metrics;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.schema.PropertyDataFetcher;
+import graphql.validation.ValidationError;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records the parse, validate and execute phase durations per operation, and the fetch latency of every
+ * field that has its own data fetcher, into {@link GraphQLMetrics}. Plain property reads are not timed.
+ * <p>
+ * Clients often send a named query without its operation name, so the phases are labelled with the
+ * name of the operation in the document, once it is known.
+ */
+public class MetricsInstrumentation extends SimpleInstrumentation {
+
+	private final GraphQLMetrics metrics;
+
+	public MetricsInstrumentation(GraphQLMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public InstrumentationState createState() {
+		return new Operation();
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters) {
+		Operation operation = parameters.getInstrumentationState();
+		operation.name = parameters.getOperation();
+		long start = System.nanoTime();
+		return new Timed<ExecutionResult>() {
+			@Override
+			public void onCompleted(ExecutionResult result, Throwable t) {
+				boolean failed = t != null || (result != null && !result.getErrors().isEmpty());
+				metrics.phase(GraphQLMetrics.REQUEST, operation.name).record(System.nanoTime() - start, failed);
+			}
+		};
+	}
+
+	@Override
+	public InstrumentationContext<Document> beginParse(InstrumentationExecutionParameters parameters) {
+		Operation operation = parameters.getInstrumentationState();
+		long start = System.nanoTime();
+		return new Timed<Document>() {
+			@Override
+			public void onCompleted(Document result, Throwable t) {
+				String name = operationName(result, parameters.getOperation());
+				operation.name = name;
+				metrics.phase(GraphQLMetrics.PARSE, name).record(System.nanoTime() - start, t != null);
+			}
+		};
+	}
+
+	@Override
+	public InstrumentationContext<List<ValidationError>> beginValidation(InstrumentationValidationParameters parameters) {
+		LatencyHistogram histogram = metrics.phase(GraphQLMetrics.VALIDATE,
+				operationName(parameters.getDocument(), parameters.getOperation()));
+		long start = System.nanoTime();
+		return new Timed<List<ValidationError>>() {
+			@Override
+			public void onCompleted(List<ValidationError> result, Throwable t) {
+				histogram.record(System.nanoTime() - start, t != null || (result != null && !result.isEmpty()));
+			}
+		};
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters) {
+		String operationName = parameters.getExecutionContext().getOperationDefinition().getName();
+		Operation operation = parameters.getInstrumentationState();
+		operation.name = operationName;
+		return timed(metrics.phase(GraphQLMetrics.EXECUTE, operationName));
+	}
+
+	@Override
+	public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters) {
+		if (parameters.getField().getDataFetcher() instanceof PropertyDataFetcher) {
+			return super.beginFieldFetch(parameters);
+		}
+		return timed(metrics.field(parameters.getEnvironment().getParentType().getName(), parameters.getField().getName()));
+	}
+
+	/**
+	 * The requested operation name, or the name of the only operation of the document.
+	 */
+	private static String operationName(Document document, String requested) {
+		if (requested != null || document == null) {
+			return requested;
+		}
+		OperationDefinition operation = null;
+		for (Definition<?> definition : document.getDefinitions()) {
+			if (definition instanceof OperationDefinition) {
+				if (operation != null) {
+					return null;
+				}
+				operation = (OperationDefinition) definition;
+			}
+		}
+		return operation == null ? null : operation.getName();
+	}
+
+	private static <T> InstrumentationContext<T> timed(LatencyHistogram histogram) {
+		long start = System.nanoTime();
+		return new Timed<T>() {
+			@Override
+			public void onCompleted(T result, Throwable t) {
+				histogram.record(System.nanoTime() - start, t != null);
+			}
+		};
+	}
+
+	/**
+	 * The operation name of one request, as far as it is known.
+	 */
+	private static class Operation implements InstrumentationState {
+		volatile String name;
+	}
+
+	private abstract static class Timed<T> implements InstrumentationContext<T> {
+		@Override
+		public void onDispatched(CompletableFuture<T> result) {
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package repository;
+
+import entity.Product;
+import entity.ProductDetail;
+import entity.ProductInstance;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Batch data access to the catalog. Every method answers a list of keys with a list of the same
+ * size, in the order of the keys, so it can back a data loader directly.
+ * <p>
+ * Returned {@link Product}s belong to the caller. Details and instances may be shared between
+ * callers and must not be modified.
+ * <p>
+ * Writes come in bulk: callers should gather the updates of many products into one call.
+ */
+public interface CatalogRepository {
+
+	/**
+	 * @return the products, null for unknown ids
+	 */
+	List<Product> findProducts(List<Long> ids);
+
+	/**
+	 * @return the details of each product, empty for unknown products
+	 */
+	List<Collection<ProductDetail>> findDetailsByProductIds(List<Long> productIds);
+
+	/**
+	 * @return the related products of each product, empty for unknown products
+	 */
+	List<Collection<Product>> findRelatedByProductIds(List<Long> productIds);
+
+	/**
+	 * The reverse of {@link #findRelatedByProductIds}.
+	 *
+	 * @return the ids of the products that list each product as related, empty for unknown products
+	 */
+	List<Collection<Long>> findRelatingProductIds(List<Long> productIds);
+
+	/**
+	 * Reads one window of the details of each product, in the stable order of
+	 * {@link #findDetailsByProductIds}.
+	 *
+	 * @return at most {@code limit} details of each product from {@code offset}, empty past the end
+	 */
+	List<List<ProductDetail>> findDetailPages(List<Long> productIds, int offset, int limit);
+
+	/**
+	 * @return at most {@code limit} related products of each product from {@code offset}, empty past the end
+	 */
+	List<List<Product>> findRelatedPages(List<Long> productIds, int offset, int limit);
+
+	/**
+	 * @return the number of details of each product, 0 for unknown products
+	 */
+	List<Integer> countDetails(List<Long> productIds);
+
+	/**
+	 * @return the number of related products of each product, 0 for unknown products
+	 */
+	List<Integer> countRelated(List<Long> productIds);
+
+	/**
+	 * @return the subscribed instance of each product, null if it has none
+	 */
+	List<ProductInstance> findInstancesByProductIds(List<Long> productIds);
+
+	/**
+	 * @return the instance created by each provisioning request, null for unknown requests
+	 */
+	List<ProductInstance> findInstancesByRequestIds(List<Long> requestIds);
+
+	/**
+	 * Applies the updates in one bulk write, all or none.
+	 *
+	 * @param updates at most one update per product
+	 * @return the updated products in the order of the updates, null for unknown ids
+	 */
+	List<Product> updateProducts(List<ProductUpdate> updates);
+}
@@ -0,0 +1,420 @@
+package repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import entity.Product;
+import entity.ProductDetail;
+import entity.ProductInstance;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import play.Configuration;
+import play.Environment;
+import play.Logger;
+import play.Logger.ALogger;
+import play.inject.ApplicationLifecycle;
+import subscriptions.InstanceStatusEvents;
+
+/**
+ * {@link CatalogRepository} serving a snapshot of the whole catalog from memory.
+ * <p>
+ * The snapshot is read from the JSON resource {@code graphql.catalog.resource} into arrays indexed by
+ * {@link LongIndex}es on the primitive ids. Readers take the current snapshot without locking;
+ * {@link #refresh()} builds a new one aside and swaps it in atomically, also every
+ * {@code graphql.catalog.refreshInterval} when that is positive.
+ * <p>
+ * Writes copy the product and detail arrays of the snapshot, so a bulk write costs one copy whatever
+ * the number of products it updates. Written changes last until the next refresh.
+ * <p>
+ * An instance whose status differs in the refreshed snapshot is published to the
+ * {@link InstanceStatusEvents}.
+ */
+@Singleton
+public class InMemoryCatalogRepository implements CatalogRepository {
+
+	private static final ALogger logger = Logger.of(InMemoryCatalogRepository.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final Environment environment;
+	private final String resource;
+	private final InstanceStatusEvents instanceStatusEvents;
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+	@Inject
+	public InMemoryCatalogRepository(Configuration configuration, Environment environment,
+			ApplicationLifecycle lifecycle, InstanceStatusEvents instanceStatusEvents) throws IOException {
+		this.environment = environment;
+		this.instanceStatusEvents = instanceStatusEvents;
+		this.resource = configuration.getString("graphql.catalog.resource", "catalog.json");
+		refresh();
+
+		long refreshMillis = configuration.getMilliseconds("graphql.catalog.refreshInterval", 0L);
+		if (refreshMillis > 0) {
+			ScheduledExecutorService refresher = new ScheduledThreadPoolExecutor(1, task -> {
+				Thread thread = new Thread(task, "catalog-refresh");
+				thread.setDaemon(true);
+				return thread;
+			});
+			refresher.scheduleWithFixedDelay(() -> {
+				try {
+					refresh();
+				} catch (Exception e) {
+					logger.error("Catalog refresh failed, keeping the current snapshot", e);
+				}
+			}, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+			lifecycle.addStopHook(() -> {
+				refresher.shutdownNow();
+				return CompletableFuture.completedFuture(null);
+			});
+		}
+	}
+
+	/**
+	 * Reloads the catalog resource and swaps the new snapshot in, then publishes the instances whose
+	 * status changed. Lookups in progress finish on the snapshot they started with.
+	 */
+	public synchronized void refresh() throws IOException {
+		long start = System.nanoTime();
+		try (InputStream in = environment.resourceAsStream(resource)) {
+			if (in == null) {
+				throw new IOException("Catalog resource " + resource + " not found");
+			}
+			Snapshot loaded = new Snapshot(MAPPER.readTree(in));
+			Snapshot previous = snapshot.getAndSet(loaded);
+			logger.info("Catalog snapshot of {} products loaded in {} ms", loaded.products.length,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			if (previous != null) {
+				publishStatusChanges(previous, loaded);
+			}
+		}
+	}
+
+	private void publishStatusChanges(Snapshot previous, Snapshot loaded) {
+		for (ProductInstance instance : loaded.instances) {
+			if (instance == null) {
+				continue;
+			}
+			int position = previous.productsById.get(instance.productId);
+			ProductInstance before = position < 0 ? null : previous.instances[position];
+			if (before != null && !Objects.equals(before.status, instance.status)) {
+				instanceStatusEvents.publish(instance);
+			}
+		}
+	}
+
+	@Override
+	public List<Product> findProducts(List<Long> ids) {
+		Snapshot current = snapshot.get();
+		List<Product> result = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? null : copy(current.products[position]));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Collection<ProductDetail>> findDetailsByProductIds(List<Long> productIds) {
+		Snapshot current = snapshot.get();
+		List<Collection<ProductDetail>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? Collections.emptyList() : current.details[position]);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Collection<Product>> findRelatedByProductIds(List<Long> productIds) {
+		return new ArrayList<>(findRelatedPages(productIds, 0, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public List<Collection<Long>> findRelatingProductIds(List<Long> productIds) {
+		Snapshot current = snapshot.get();
+		List<Collection<Long>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? Collections.emptyList()
+					: Arrays.stream(current.relating[position]).boxed().collect(Collectors.toList()));
+		}
+		return result;
+	}
+
+	@Override
+	public List<List<ProductDetail>> findDetailPages(List<Long> productIds, int offset, int limit) {
+		Snapshot current = snapshot.get();
+		List<List<ProductDetail>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			List<ProductDetail> details = position < 0 ? Collections.emptyList() : current.details[position];
+			int from = Math.min(offset, details.size());
+			result.add(details.subList(from, from + Math.min(limit, details.size() - from)));
+		}
+		return result;
+	}
+
+	@Override
+	public List<List<Product>> findRelatedPages(List<Long> productIds, int offset, int limit) {
+		Snapshot current = snapshot.get();
+		List<List<Product>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			if (position < 0) {
+				result.add(Collections.emptyList());
+				continue;
+			}
+			long[] relatedIds = current.related[position];
+			int from = Math.min(offset, relatedIds.length);
+			int to = from + Math.min(limit, relatedIds.length - from);
+			List<Product> related = new ArrayList<>(to - from);
+			for (int r = from; r < to; r++) {
+				related.add(copy(current.products[current.productsById.get(relatedIds[r])]));
+			}
+			result.add(related);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Integer> countDetails(List<Long> productIds) {
+		Snapshot current = snapshot.get();
+		List<Integer> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? 0 : current.details[position].size());
+		}
+		return result;
+	}
+
+	@Override
+	public List<Integer> countRelated(List<Long> productIds) {
+		Snapshot current = snapshot.get();
+		List<Integer> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? 0 : current.related[position].length);
+		}
+		return result;
+	}
+
+	@Override
+	public List<ProductInstance> findInstancesByProductIds(List<Long> productIds) {
+		Snapshot current = snapshot.get();
+		List<ProductInstance> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			int position = current.productsById.get(id);
+			result.add(position < 0 ? null : current.instances[position]);
+		}
+		return result;
+	}
+
+	@Override
+	public List<ProductInstance> findInstancesByRequestIds(List<Long> requestIds) {
+		Snapshot current = snapshot.get();
+		List<ProductInstance> result = new ArrayList<>(requestIds.size());
+		for (Long requestId : requestIds) {
+			int index = current.instancesByRequestId.get(requestId);
+			result.add(index < 0 ? null : current.instances[current.instancePositions[index]]);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized List<Product> updateProducts(List<ProductUpdate> updates) {
+		Snapshot current = snapshot.get();
+		Product[] products = current.products.clone();
+		List<ProductDetail>[] details = current.details.clone();
+		List<Product> result = new ArrayList<>(updates.size());
+		for (ProductUpdate update : updates) {
+			int position = current.productsById.get(update.getProductId());
+			if (position < 0) {
+				result.add(null);
+				continue;
+			}
+			Product product = copy(products[position]);
+			if (update.getName() != null) {
+				product.setName(update.getName());
+			}
+			if (update.getCategoryName() != null) {
+				product.setCategoryName(update.getCategoryName());
+			}
+			if (update.getDescription() != null) {
+				product.setDescription(update.getDescription());
+			}
+			if (update.getImage() != null) {
+				product.setImage(update.getImage());
+			}
+			products[position] = product;
+			if (!update.getDetails().isEmpty()) {
+				Map<Long, ProductDetail> merged = new LinkedHashMap<>();
+				for (ProductDetail detail : details[position]) {
+					merged.put(detail.id, detail);
+				}
+				merged.putAll(update.getDetails());
+				details[position] = Collections.unmodifiableList(new ArrayList<>(merged.values()));
+			}
+			result.add(copy(product));
+		}
+		snapshot.set(new Snapshot(current, products, details));
+		return result;
+	}
+
+	private static Product copy(Product template) {
+		Product product = new Product();
+		product.setId(template.getId());
+		product.setName(template.getName());
+		product.setCategoryName(template.getCategoryName());
+		product.setDescription(template.getDescription());
+		product.setImage(template.getImage());
+		product.setParentId(template.getParentId());
+		return product;
+	}
+
+	/**
+	 * One immutable version of the catalog. Everything about a product sits at the position the
+	 * product has in {@link #products}.
+	 */
+	static final class Snapshot {
+		final Product[] products;
+		final LongIndex productsById;
+		final List<ProductDetail>[] details;
+		final long[][] related;
+		/** The ids of the products listing each product as related. */
+		final long[][] relating;
+		final ProductInstance[] instances;
+		/** Indexes request ids into {@link #instancePositions}, the product positions of their instances. */
+		final LongIndex instancesByRequestId;
+		final int[] instancePositions;
+
+		/**
+		 * The base snapshot with other products and details at the same positions.
+		 */
+		Snapshot(Snapshot base, Product[] products, List<ProductDetail>[] details) {
+			this.products = products;
+			this.details = details;
+			this.productsById = base.productsById;
+			this.related = base.related;
+			this.relating = base.relating;
+			this.instances = base.instances;
+			this.instancesByRequestId = base.instancesByRequestId;
+			this.instancePositions = base.instancePositions;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Snapshot(JsonNode catalog) {
+			JsonNode items = catalog.path("products");
+			int size = items.size();
+			products = new Product[size];
+			details = new List[size];
+			related = new long[size][];
+			instances = new ProductInstance[size];
+			long[] ids = new long[size];
+			long[] requestIds = new long[size];
+			int[] positions = new int[size];
+			int instanceCount = 0;
+
+			for (int i = 0; i < size; i++) {
+				JsonNode item = items.get(i);
+				Product product = new Product();
+				product.setId(item.path("id").asLong());
+				product.setName(item.path("name").asText(null));
+				product.setCategoryName(item.path("categoryName").asText(null));
+				product.setDescription(item.path("description").asText(null));
+				product.setImage(item.path("image").asText(null));
+				if (item.hasNonNull("parentId")) {
+					product.setParentId(item.path("parentId").asLong());
+				}
+				products[i] = product;
+				ids[i] = product.getId();
+
+				List<ProductDetail> productDetails = new ArrayList<>(item.path("details").size());
+				for (JsonNode detail : item.path("details")) {
+					productDetails.add(detail(detail));
+				}
+				details[i] = Collections.unmodifiableList(productDetails);
+
+				JsonNode relatedIds = item.path("related");
+				related[i] = new long[relatedIds.size()];
+				for (int r = 0; r < relatedIds.size(); r++) {
+					related[i][r] = relatedIds.get(r).asLong();
+				}
+
+				if (item.hasNonNull("instance")) {
+					ProductInstance instance = instance(item.path("instance"), product.getId());
+					instances[i] = instance;
+					if (instance.requestId != null) {
+						requestIds[instanceCount] = instance.requestId;
+						positions[instanceCount++] = i;
+					}
+				}
+			}
+
+			LongIndex index = new LongIndex(ids);
+			int[] relatingCounts = new int[size];
+			for (int i = 0; i < size; i++) {
+				// drop links to products missing from the catalog, so pages and counts agree
+				related[i] = Arrays.stream(related[i]).filter(id -> index.get(id) >= 0).toArray();
+				for (long id : related[i]) {
+					relatingCounts[index.get(id)]++;
+				}
+			}
+			relating = new long[size][];
+			for (int i = 0; i < size; i++) {
+				relating[i] = new long[relatingCounts[i]];
+				relatingCounts[i] = 0;
+			}
+			for (int i = 0; i < size; i++) {
+				for (long id : related[i]) {
+					int position = index.get(id);
+					relating[position][relatingCounts[position]++] = ids[i];
+				}
+			}
+			productsById = index;
+			instancesByRequestId = new LongIndex(Arrays.copyOf(requestIds, instanceCount));
+			instancePositions = Arrays.copyOf(positions, instanceCount);
+		}
+
+		private static ProductDetail detail(JsonNode item) {
+			ProductDetail detail = new ProductDetail();
+			detail.id = item.path("id").asLong();
+			detail.name = item.path("name").asText(null);
+			detail.description = item.path("description").asText(null);
+			detail.display = item.path("display").asText(null);
+			detail.image = item.path("image").asText(null);
+			detail.link = item.path("link").asText(null);
+			detail.linkCaption = item.path("linkCaption").asText(null);
+			detail.type = item.path("type").asText(null);
+			detail.header = item.path("header").asBoolean(false);
+			detail.card = item.path("card").asBoolean(false);
+			return detail;
+		}
+
+		private static ProductInstance instance(JsonNode item, long productId) {
+			ProductInstance instance = new ProductInstance();
+			instance.id = item.path("id").asLong();
+			instance.requestId = item.hasNonNull("requestId") ? item.path("requestId").asLong() : null;
+			instance.productId = productId;
+			instance.name = item.path("name").asText(null);
+			instance.note = item.path("note").asText(null);
+			instance.status = item.path("status").asText(null);
+			instance.subscribedDate = item.path("subscribedDate").asText(null);
+			return instance;
+		}
+	}
+}
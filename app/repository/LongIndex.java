@@ -0,0 +1,59 @@
+package repository;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open addressing hash index from primitive {@code long} keys to positions, so lookups
+ * neither box the key nor allocate.
+ */
+final class LongIndex {
+
+	private static final int ABSENT = -1;
+
+	private final long[] keys;
+	private final int[] positions;
+	private final int mask;
+
+	/**
+	 * Indexes every key by its position in the array.
+	 *
+	 * @throws IllegalArgumentException on duplicate keys
+	 */
+	LongIndex(long[] keys) {
+		int capacity = Integer.highestOneBit(Math.max(2, keys.length * 2 - 1)) << 1;
+		this.keys = new long[capacity];
+		this.positions = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(positions, ABSENT);
+		for (int i = 0; i < keys.length; i++) {
+			int slot = slot(keys[i]);
+			while (positions[slot] != ABSENT) {
+				if (this.keys[slot] == keys[i]) {
+					throw new IllegalArgumentException("Duplicate key " + keys[i]);
+				}
+				slot = (slot + 1) & mask;
+			}
+			this.keys[slot] = keys[i];
+			this.positions[slot] = i;
+		}
+	}
+
+	/**
+	 * @return the position of the key, -1 if it is not indexed
+	 */
+	int get(long key) {
+		int slot = slot(key);
+		while (positions[slot] != ABSENT) {
+			if (keys[slot] == key) {
+				return positions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return ABSENT;
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,95 @@
+package repository;
+
+import entity.ProductDetail;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes to one product: the fields to overwrite, null meaning unchanged, and the details to
+ * insert or replace by id.
+ */
+public class ProductUpdate {
+
+	private final Long productId;
+	private String name;
+	private String categoryName;
+	private String description;
+	private String image;
+	private final Map<Long, ProductDetail> details = new LinkedHashMap<>();
+
+	public ProductUpdate(Long productId) {
+		this.productId = productId;
+	}
+
+	public Long getProductId() {
+		return productId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getCategoryName() {
+		return categoryName;
+	}
+
+	public void setCategoryName(String categoryName) {
+		this.categoryName = categoryName;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public String getImage() {
+		return image;
+	}
+
+	public void setImage(String image) {
+		this.image = image;
+	}
+
+	/**
+	 * @return the details to upsert, by detail id
+	 */
+	public Map<Long, ProductDetail> getDetails() {
+		return details;
+	}
+
+	public void upsertDetails(Collection<ProductDetail> upserts) {
+		for (ProductDetail detail : upserts) {
+			details.put(detail.id, detail);
+		}
+	}
+
+	/**
+	 * Folds a later update of the same product into this one: its fields win over ours.
+	 *
+	 * @return this
+	 */
+	public ProductUpdate mergeFrom(ProductUpdate later) {
+		if (later.name != null) {
+			name = later.name;
+		}
+		if (later.categoryName != null) {
+			categoryName = later.categoryName;
+		}
+		if (later.description != null) {
+			description = later.description;
+		}
+		if (later.image != null) {
+			image = later.image;
+		}
+		upsertDetails(later.details.values());
+		return this;
+	}
+}
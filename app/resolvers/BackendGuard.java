@@ -0,0 +1,145 @@
+package resolvers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValue;
+import exception.CatalogException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import play.inject.ApplicationLifecycle;
+
+/**
+ * Runs backend calls on the {@link ResolverExecutor} with a timeout and a {@link CircuitBreaker} per
+ * dependency.
+ * <p>
+ * A dependency is named after the field it serves, e.g. {@code Product.related}, and times out after
+ * {@code graphql.resilience.timeouts.<dependency>}, or {@code graphql.resilience.defaultTimeout}. A call
+ * that times out, or is rejected by an open breaker, fails with a {@link CatalogException} coded
+ * {@value #UPSTREAM_TIMEOUT} or {@value #UPSTREAM_UNAVAILABLE}: a nullable field resolves to null with
+ * that error and the rest of the response is still returned. A call that times out is also cancelled,
+ * so it does not keep holding a resolver thread.
+ */
+@Singleton
+public class BackendGuard {
+
+	public static final String UPSTREAM_TIMEOUT = "UPSTREAM_TIMEOUT";
+	public static final String UPSTREAM_UNAVAILABLE = "UPSTREAM_UNAVAILABLE";
+
+	private final ResolverExecutor resolverExecutor;
+	private final GraphQLMetrics metrics;
+	private final long defaultTimeoutMillis;
+	private final Map<String, Long> timeoutMillis = new HashMap<>();
+	private final int failureThreshold;
+	private final long openMillis;
+	private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+	private final ScheduledThreadPoolExecutor timer;
+
+	@Inject
+	public BackendGuard(ResolverExecutor resolverExecutor, GraphQLMetrics metrics, Configuration configuration,
+			ApplicationLifecycle lifecycle) {
+		this.resolverExecutor = resolverExecutor;
+		this.metrics = metrics;
+		this.defaultTimeoutMillis = configuration.getMilliseconds("graphql.resilience.defaultTimeout", 2000L);
+		Configuration timeouts = configuration.getConfig("graphql.resilience.timeouts");
+		if (timeouts != null) {
+			Config durations = timeouts.underlying();
+			for (Map.Entry<String, ConfigValue> entry : durations.entrySet()) {
+				timeoutMillis.put(entry.getKey(), durations.getDuration(entry.getKey(), TimeUnit.MILLISECONDS));
+			}
+		}
+		this.failureThreshold = configuration.getInt("graphql.resilience.breaker.failureThreshold", 5);
+		this.openMillis = configuration.getMilliseconds("graphql.resilience.breaker.openDuration", 10000L);
+
+		this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+			Thread thread = new Thread(task, "graphql-backend-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+		lifecycle.addStopHook(() -> {
+			timer.shutdownNow();
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	/**
+	 * @param dependency the field the call serves, e.g. {@code Product.related}
+	 * @param call the blocking backend call
+	 * @throws RejectedExecutionException when the resolver executor is saturated
+	 */
+	public <T> CompletableFuture<T> call(String dependency, Supplier<T> call) {
+		CircuitBreaker breaker = breaker(dependency);
+		if (!breaker.allowRequest()) {
+			CompletableFuture<T> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(new CatalogException(UPSTREAM_UNAVAILABLE,
+					dependency + " is unavailable, retry later"));
+			return rejected;
+		}
+
+		CompletableFuture<T> backend;
+		try {
+			backend = resolverExecutor.supply(call);
+		} catch (RejectedExecutionException e) {
+			breaker.onCancelled();
+			throw e;
+		}
+
+		long timeout = getTimeoutMillis(dependency);
+		CompletableFuture<T> result = new CompletableFuture<>();
+		ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+			if (result.completeExceptionally(new CatalogException(UPSTREAM_TIMEOUT,
+					dependency + " timed out after " + timeout + " ms"))) {
+				backend.cancel(true);
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		backend.whenComplete((value, e) -> {
+			timeoutTask.cancel(false);
+			if (e != null) {
+				result.completeExceptionally(e);
+			} else {
+				result.complete(value);
+			}
+		});
+		result.whenComplete((value, e) -> {
+			if (e != null) {
+				breaker.onFailure();
+			} else {
+				breaker.onSuccess();
+			}
+		});
+		return result;
+	}
+
+	public long getTimeoutMillis(String dependency) {
+		return timeoutMillis.getOrDefault(dependency, defaultTimeoutMillis);
+	}
+
+	public CircuitBreaker.State getState(String dependency) {
+		return breaker(dependency).getState();
+	}
+
+	private CircuitBreaker breaker(String dependency) {
+		CircuitBreaker breaker = breakers.get(dependency);
+		if (breaker == null) {
+			breaker = breakers.computeIfAbsent(dependency, name -> {
+				CircuitBreaker created = new CircuitBreaker(failureThreshold, openMillis, TimeUnit.MILLISECONDS);
+				metrics.gauge("graphql_circuit_breaker_state_" + name.replace('.', '_').toLowerCase(),
+						"State of the circuit breaker of " + name + ": 0 closed, 1 open, 2 half open.",
+						() -> created.getState().ordinal());
+				return created;
+			});
+		}
+		return breaker;
+	}
+}
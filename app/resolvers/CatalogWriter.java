@@ -0,0 +1,287 @@
+package resolvers;
+
+import cache.ResolverCache;
+import cache.ResponseCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import entity.Product;
+import exception.CatalogException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import play.Logger;
+import play.Logger.ALogger;
+import play.inject.ApplicationLifecycle;
+import repository.CatalogRepository;
+import repository.ProductUpdate;
+
+/**
+ * Write path of the catalog mutations.
+ * <p>
+ * Updates are held for {@code graphql.mutations.coalesceWindow} after the first one of a batch, or
+ * until {@code graphql.mutations.maxBatchSize} products are pending. Updates of the same product
+ * within that time are merged into one, the later fields winning, and the products of the batch are
+ * written with a single {@link CatalogRepository#updateProducts} call through the {@link BackendGuard}.
+ * Every caller's future completes once the batch holding its update is written, after the cached
+ * reads of the written products, and the cached responses built from them, have been evicted.
+ * <p>
+ * Batches are written one at a time, in the order they were taken, so a later update of a product
+ * never lands before an earlier one. A batch waiting behind a write that does not finish fails its
+ * callers with {@value BackendGuard#UPSTREAM_TIMEOUT} after the timeout of {@value #WRITE_BACKEND},
+ * and is not written. The caches are evicted when a write is over, even if its callers have timed out
+ * by then.
+ */
+@Singleton
+public class CatalogWriter {
+
+	private static final ALogger logger = Logger.of(CatalogWriter.class);
+
+	public static final String NOT_FOUND = "NOT_FOUND";
+
+	/** Backend dependency of the bulk writes. */
+	static final String WRITE_BACKEND = "Mutation.write";
+
+	private final CatalogRepository catalogRepository;
+	private final BackendGuard backendGuard;
+	private final ResolverCache resolverCache;
+	private final ResponseCache responseCache;
+	private final long windowMillis;
+	private final int maxBatchSize;
+	private final ScheduledThreadPoolExecutor timer;
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	private final Object lock = new Object();
+	/** Guarded by {@link #lock}. */
+	private Map<Long, PendingWrite> pending = new LinkedHashMap<>();
+	/** Guarded by {@link #lock}; the flush of the pending batch, if scheduled. */
+	private ScheduledFuture<?> scheduledFlush;
+	/** Guarded by {@link #lock}; lands with the last batch taken. */
+	private CompletableFuture<Void> lastLanded = CompletableFuture.completedFuture(null);
+
+	@Inject
+	public CatalogWriter(CatalogRepository catalogRepository, BackendGuard backendGuard, ResolverCache resolverCache,
+			ResponseCache responseCache, GraphQLMetrics metrics, Configuration configuration,
+			ApplicationLifecycle lifecycle) {
+		this.catalogRepository = catalogRepository;
+		this.backendGuard = backendGuard;
+		this.resolverCache = resolverCache;
+		this.responseCache = responseCache;
+		this.windowMillis = configuration.getMilliseconds("graphql.mutations.coalesceWindow", 5L);
+		this.maxBatchSize = configuration.getInt("graphql.mutations.maxBatchSize", 500);
+
+		this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+			Thread thread = new Thread(task, "graphql-write-coalescer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+		lifecycle.addStopHook(() -> {
+			timer.shutdown();
+			return CompletableFuture.completedFuture(null);
+		});
+
+		metrics.gauge("graphql_write_updates", "Product updates submitted by mutations.", submitted::sum);
+		metrics.gauge("graphql_write_products", "Products written after coalescing.", written::sum);
+		metrics.gauge("graphql_write_batches", "Bulk writes sent to the catalog backend.", batches::sum);
+	}
+
+	/**
+	 * Queues the update for the next batch.
+	 *
+	 * @return the product as written, failed with a {@link CatalogException} coded {@value #NOT_FOUND}
+	 *         for an unknown product, or with the error of the batch
+	 */
+	public CompletableFuture<Product> submit(ProductUpdate update) {
+		CompletableFuture<Product> result = new CompletableFuture<>();
+		Batch full = null;
+		synchronized (lock) {
+			PendingWrite write = pending.get(update.getProductId());
+			if (write == null) {
+				write = new PendingWrite(update.getProductId());
+				pending.put(update.getProductId(), write);
+			}
+			write.update.mergeFrom(update);
+			write.waiters.add(result);
+			if (pending.size() >= maxBatchSize) {
+				full = takePending();
+			} else if (scheduledFlush == null) {
+				scheduledFlush = timer.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		submitted.increment();
+		if (full != null) {
+			write(full);
+		}
+		return result;
+	}
+
+	private void flush() {
+		Batch batch;
+		synchronized (lock) {
+			batch = takePending();
+		}
+		if (batch != null) {
+			write(batch);
+		}
+	}
+
+	/**
+	 * Must hold {@link #lock}.
+	 *
+	 * @return the pending batch, placed after the last one taken, or null if nothing is pending
+	 */
+	private Batch takePending() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (pending.isEmpty()) {
+			return null;
+		}
+		Batch batch = new Batch(pending, lastLanded);
+		pending = new LinkedHashMap<>();
+		lastLanded = batch.landed;
+		return batch;
+	}
+
+	private void write(Batch batch) {
+		batches.increment();
+		written.add(batch.writes.size());
+		if (batch.previous.isDone()) {
+			start(batch);
+			return;
+		}
+		long timeout = backendGuard.getTimeoutMillis(WRITE_BACKEND);
+		ScheduledFuture<?> queueTimeout = timer.schedule(() -> giveUp(batch, new CatalogException(
+				BackendGuard.UPSTREAM_TIMEOUT, WRITE_BACKEND + " timed out after " + timeout
+						+ " ms behind an earlier write")),
+				timeout, TimeUnit.MILLISECONDS);
+		batch.previous.whenComplete((done, e) -> {
+			queueTimeout.cancel(false);
+			start(batch);
+		});
+	}
+
+	private void start(Batch batch) {
+		if (batch.claimed.get()) {
+			// given up while queued
+			return;
+		}
+		List<ProductUpdate> updates = new ArrayList<>(batch.writes.size());
+		batch.writes.values().forEach(write -> updates.add(write.update));
+
+		CompletableFuture<List<Product>> products;
+		try {
+			products = backendGuard.call(WRITE_BACKEND, () -> {
+				if (!batch.claimed.compareAndSet(false, true)) {
+					throw new CancellationException("Write given up before it started");
+				}
+				try {
+					return catalogRepository.updateProducts(updates);
+				} finally {
+					// once the write is over, also after its caller timed out: evicting any earlier would let
+					// a concurrent read cache the old values again
+					try {
+						invalidate(batch.writes.keySet());
+					} finally {
+						batch.landed.complete(null);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			giveUp(batch, e);
+			return;
+		}
+		products.whenComplete((values, e) -> {
+			if (e != null) {
+				giveUp(batch, e);
+				return;
+			}
+			int i = 0;
+			for (PendingWrite write : batch.writes.values()) {
+				Product product = values.get(i++);
+				for (CompletableFuture<Product> waiter : write.waiters) {
+					if (product == null) {
+						waiter.completeExceptionally(new CatalogException(NOT_FOUND,
+								"Product " + write.update.getProductId() + " does not exist"));
+					} else {
+						waiter.complete(product);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fails the callers of the batch. A batch given up before its write started is never written: it
+	 * lands as soon as the batch before it has.
+	 */
+	private void giveUp(Batch batch, Throwable e) {
+		if (batch.claimed.compareAndSet(false, true)) {
+			batch.previous.whenComplete((done, previousError) -> batch.landed.complete(null));
+		}
+		for (PendingWrite write : batch.writes.values()) {
+			write.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+		}
+	}
+
+	/**
+	 * Evicts the cached reads of the written products, including the related lists and pages of the
+	 * products that list them, which hold copies of them, and the cached responses built from them.
+	 */
+	private void invalidate(Set<Long> productIds) {
+		resolverCache.invalidate(ProductDataFetcher.PRODUCT, productIds);
+		resolverCache.invalidate(ProductDataFetcher.PRODUCT_DETAIL, productIds);
+		try {
+			Set<Long> relating = new HashSet<>(productIds);
+			catalogRepository.findRelatingProductIds(new ArrayList<>(productIds)).forEach(relating::addAll);
+			resolverCache.invalidate(ProductDataFetcher.PRODUCT_RELATED, relating);
+		} catch (RuntimeException e) {
+			logger.warn("Related products of {} not found, evicting every related list", productIds, e);
+			resolverCache.invalidateAll(ProductDataFetcher.PRODUCT_RELATED);
+		}
+		responseCache.invalidate(productIds);
+	}
+
+	/**
+	 * One bulk write, ordered after the batch taken before it.
+	 */
+	private static final class Batch {
+		private final Map<Long, PendingWrite> writes;
+		/** Completes once the batch taken before has landed. */
+		private final CompletableFuture<Void> previous;
+		/** Completes once this batch is written, or known never to be, and evicted. */
+		private final CompletableFuture<Void> landed = new CompletableFuture<>();
+		/** Set by whichever comes first: the write starting, or the batch being given up. */
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		Batch(Map<Long, PendingWrite> writes, CompletableFuture<Void> previous) {
+			this.writes = writes;
+			this.previous = previous;
+		}
+	}
+
+	private static final class PendingWrite {
+		private final ProductUpdate update;
+		private final List<CompletableFuture<Product>> waiters = new ArrayList<>(1);
+
+		PendingWrite(Long productId) {
+			this.update = new ProductUpdate(productId);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package resolvers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for one backend dependency.
+ * <p>
+ * Closed, it lets every call through and counts consecutive failures. After {@code failureThreshold}
+ * of them it opens and rejects calls for {@code openDuration}. Then it lets a single probe through,
+ * half open: the probe's success closes it, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openNanos;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long openUntil;
+
+	public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+		this.failureThreshold = failureThreshold;
+		this.openNanos = unit.toNanos(openDuration);
+	}
+
+	/**
+	 * @return true if the call may go to the backend; its outcome must then be reported with
+	 *         {@link #onSuccess}, {@link #onFailure} or {@link #onCancelled}
+	 */
+	public synchronized boolean allowRequest() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (System.nanoTime() - openUntil >= 0) {
+				state = State.HALF_OPEN;
+				return true;
+			}
+			return false;
+		default:
+			// a probe is in flight
+			return false;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+			state = State.OPEN;
+			openUntil = System.nanoTime() + openNanos;
+			failures = 0;
+		}
+	}
+
+	/**
+	 * The allowed call never reached the backend; a probe slot is given back.
+	 */
+	public synchronized void onCancelled() {
+		if (state == State.HALF_OPEN) {
+			state = State.OPEN;
+			openUntil = System.nanoTime();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
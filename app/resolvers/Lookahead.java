@@ -0,0 +1,131 @@
+package resolvers;
+
+import graphql.Directives;
+import graphql.language.Directive;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.dataloader.DataLoader;
+
+/**
+ * Selection set lookahead for resolvers.
+ * <p>
+ * A parent fetcher asks {@link #selected} which of its child collections the query wants and starts
+ * loading them at the same time as the parent, instead of one level later. The child fields are wired
+ * with {@link #reuseOrLoad}, which returns the value already on the source object or the load its
+ * parent started, and only falls back to a batched {@link DataLoader} when there is neither.
+ * <p>
+ * Children marked {@code @defer} are never loaded with the parent, so that they do not hold back the
+ * initial response; they come later from their data loader.
+ */
+public final class Lookahead {
+
+	private Lookahead() {
+	}
+
+	/**
+	 * @return the subset of the given child fields that the query selects on the current field
+	 */
+	public static Set<String> selected(DataFetchingEnvironment env, String... fields) {
+		DataFetchingFieldSelectionSet selectionSet = env.getSelectionSet();
+		Set<String> deferred = deferred(env);
+		Set<String> selected = new LinkedHashSet<>();
+		for (String field : fields) {
+			if (selectionSet.contains(field) && !deferred.contains(field)) {
+				selected.add(field);
+			}
+		}
+		return selected.isEmpty() ? Collections.emptySet() : selected;
+	}
+
+	/**
+	 * @return the child fields selected on the current field with {@code @defer}, directly or through
+	 *         fragments
+	 */
+	static Set<String> deferred(DataFetchingEnvironment env) {
+		Set<String> deferred = Collections.emptySet();
+		for (Field field : env.getFields()) {
+			deferred = addDeferred(field.getSelectionSet(), env.getFragmentsByName(), deferred);
+		}
+		return deferred;
+	}
+
+	/**
+	 * @return the deferred fields with those of the selection set added, in a new set when there are some
+	 *         and {@code deferred} is empty
+	 */
+	private static Set<String> addDeferred(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments,
+			Set<String> deferred) {
+		if (selectionSet == null) {
+			return deferred;
+		}
+		for (Selection<?> selection : selectionSet.getSelections()) {
+			if (selection instanceof InlineFragment) {
+				deferred = addDeferred(((InlineFragment) selection).getSelectionSet(), fragments, deferred);
+			} else if (selection instanceof FragmentSpread) {
+				FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+				deferred = addDeferred(fragment == null ? null : fragment.getSelectionSet(), fragments, deferred);
+			} else if (selection instanceof Field) {
+				Field child = (Field) selection;
+				for (Directive directive : child.getDirectives()) {
+					if (Directives.DeferDirective.getName().equals(directive.getName())) {
+						if (deferred.isEmpty()) {
+							deferred = new LinkedHashSet<>();
+						}
+						deferred.add(child.getName());
+					}
+				}
+			}
+		}
+		return deferred;
+	}
+
+	/**
+	 * @param resolved reads the value the parent fetcher already stored on the source, null if it did not
+	 * @param loaderName the data loader that fetches the value otherwise, also the name of the child field
+	 *            in {@link Prefetched#prefetched}
+	 * @param key the data loader key of the source
+	 */
+	@SuppressWarnings("unchecked")
+	public static <S, K, V> DataFetcher<CompletableFuture<V>> reuseOrLoad(Function<S, V> resolved, String loaderName,
+			Function<S, K> key) {
+		return env -> {
+			S source = env.getSource();
+			V value = resolved.apply(source);
+			if (value != null) {
+				return CompletableFuture.completedFuture(value);
+			}
+			if (source instanceof Prefetched) {
+				CompletableFuture<V> prefetched = (CompletableFuture<V>) ((Prefetched) source).prefetched(loaderName);
+				if (prefetched != null) {
+					return prefetched;
+				}
+			}
+			DataLoader<K, V> loader = env.getDataLoader(loaderName);
+			return loader.load(key.apply(source));
+		};
+	}
+
+	/**
+	 * A source object carrying the loads its parent fetcher started for some of its children.
+	 */
+	public interface Prefetched {
+
+		/**
+		 * @return the load of the child field, null if it was not started
+		 */
+		CompletableFuture<?> prefetched(String field);
+	}
+}
@@ -0,0 +1,132 @@
+package resolvers;
+
+import entity.Connection;
+import entity.Connection.Edge;
+import entity.Connection.PageInfo;
+import exception.CatalogException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Offset based Relay connections.
+ * <p>
+ * A cursor is the opaque base64 form of the offset of its edge in the whole list. A page of
+ * {@code first} edges is read as {@code first + 1} rows from the offset after the {@code after}
+ * cursor, the extra row only telling whether there is a next page, so the backend never loads rows
+ * that are not returned and no count is needed.
+ */
+public final class Pagination {
+
+	public static final int MAX_PAGE_SIZE = 100;
+
+	private static final String CURSOR_PREFIX = "offset:";
+	private static final String BAD_USER_INPUT = "BAD_USER_INPUT";
+
+	private Pagination() {
+	}
+
+	/**
+	 * @param first the {@code first} argument, between 0 and {@value #MAX_PAGE_SIZE}
+	 */
+	public static int first(Integer first) {
+		if (first == null || first < 0 || first > MAX_PAGE_SIZE) {
+			throw new CatalogException(BAD_USER_INPUT, "first: must be between 0 and " + MAX_PAGE_SIZE);
+		}
+		return first;
+	}
+
+	/**
+	 * @param after the {@code after} argument, null for the start of the list
+	 * @return the offset of the first edge after the cursor
+	 */
+	public static int offset(String after) {
+		if (after == null) {
+			return 0;
+		}
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+			if (decoded.startsWith(CURSOR_PREFIX)) {
+				int offset = Integer.parseInt(decoded.substring(CURSOR_PREFIX.length()));
+				if (offset >= 0 && offset < Integer.MAX_VALUE) {
+					return offset + 1;
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// not base64 or not a number, reported below
+		}
+		throw new CatalogException(BAD_USER_INPUT, "after: not a cursor of this connection");
+	}
+
+	public static String cursor(int offset) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((CURSOR_PREFIX + offset).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param rows up to {@code first + 1} rows read from the offset
+	 */
+	public static <T> Connection<T> connection(Long parentId, List<T> rows, int offset, int first) {
+		int size = Math.min(first, rows.size());
+		List<Edge<T>> edges = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			edges.add(new Edge<>(cursor(offset + i), rows.get(i)));
+		}
+		PageInfo pageInfo = new PageInfo(rows.size() > first, offset > 0,
+				size == 0 ? null : edges.get(0).getCursor(), size == 0 ? null : edges.get(size - 1).getCursor());
+		return new Connection<>(parentId, edges, pageInfo);
+	}
+
+	/**
+	 * Data loader key of one page of a child list.
+	 */
+	public static final class PageKey {
+		private final Long parentId;
+		private final int offset;
+		private final int limit;
+
+		public PageKey(Long parentId, int offset, int limit) {
+			this.parentId = parentId;
+			this.offset = offset;
+			this.limit = limit;
+		}
+
+		public Long getParentId() {
+			return parentId;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public int getLimit() {
+			return limit;
+		}
+
+		/**
+		 * @return the page window, shared by the keys that can be read with one backend call
+		 */
+		String window() {
+			return offset + ":" + limit;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PageKey)) {
+				return false;
+			}
+			PageKey other = (PageKey) obj;
+			return offset == other.offset && limit == other.limit && Objects.equals(parentId, other.parentId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(parentId, offset, limit);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package resolvers;
+
+import entity.Product;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An offering as {@link ProductDataFetcher#productById()} returns it: a copy of the cached offering
+ * together with the loads of its selected children, which were started alongside it.
+ */
+class PrefetchedProduct extends Product implements Lookahead.Prefetched {
+
+	private final Map<String, CompletableFuture<?>> children;
+
+	PrefetchedProduct(Product product, Map<String, CompletableFuture<?>> children) {
+		setId(product.getId());
+		setName(product.getName());
+		setCategoryName(product.getCategoryName());
+		setDescription(product.getDescription());
+		setImage(product.getImage());
+		setParentId(product.getParentId());
+		setDetails(product.getDetails());
+		setRelated(product.getRelated());
+		setInstance(product.getInstance());
+		this.children = children;
+	}
+
+	@Override
+	public CompletableFuture<?> prefetched(String field) {
+		return children.get(field);
+	}
+}
@@ -1,113 +1,426 @@
 package resolvers;
 
+import cache.ResolverCache;
 import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import entity.Connection;
 import entity.Product;
 import entity.ProductDetail;
 import entity.ProductInstance;
 import exception.CatalogException;
 import graphql.schema.DataFetcher;
-import graphql.schema.DataFetchingFieldSelectionSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.reactivestreams.Publisher;
 import play.Logger;
 import play.Logger.ALogger;
+import repository.CatalogRepository;
+import repository.ProductUpdate;
+import resolvers.Pagination.PageKey;
+import subscriptions.InstanceStatusEvents;
 
 public class ProductDataFetcher {
 
+	/** Child fields of Product, also used as the names of their data loaders. */
+	public static final String DETAILS = "details";
+	public static final String RELATED = "related";
+	public static final String INSTANCE = "instance";
+
+	/** Paginated child fields of Product, also used as the names of their page data loaders. */
+	public static final String DETAILS_CONNECTION = "detailsConnection";
+	public static final String RELATED_CONNECTION = "relatedConnection";
+
+	/** Data loaders of the totalCount of the connections. */
+	private static final String DETAILS_COUNT = "detailsCount";
+	private static final String RELATED_COUNT = "relatedCount";
+
+	/** {@link ResolverCache} types: the GraphQL type of the values, or the relation they come from. */
+	public static final String PRODUCT = "Product";
+	public static final String PRODUCT_DETAIL = "ProductDetail";
+	public static final String PRODUCT_INSTANCE = "ProductInstance";
+	public static final String PRODUCT_RELATED = "ProductRelated";
+
+	/** Backend dependencies, named after the field they serve. */
+	private static final String PRODUCT_BACKEND = "Query.productById";
+	private static final String DETAILS_BACKEND = PRODUCT + "." + DETAILS;
+	private static final String RELATED_BACKEND = PRODUCT + "." + RELATED;
+	private static final String INSTANCE_BACKEND = PRODUCT + "." + INSTANCE;
+	private static final String DETAILS_CONNECTION_BACKEND = PRODUCT + "." + DETAILS_CONNECTION;
+	private static final String RELATED_CONNECTION_BACKEND = PRODUCT + "." + RELATED_CONNECTION;
+	private static final String DETAILS_COUNT_BACKEND = "ProductDetailConnection.totalCount";
+	private static final String RELATED_COUNT_BACKEND = "ProductConnection.totalCount";
+
 	private final ALogger logger = Logger.of(ProductDataFetcher.class);
 
+	@Inject
+	private ResolverCache resolverCache;
+
+	@Inject
+	private BackendGuard backendGuard;
+
+	@Inject
+	private CatalogRepository catalogRepository;
+
+	@Inject
+	private InstanceStatusEvents instanceStatusEvents;
+
+	@Inject
+	private CatalogWriter catalogWriter;
+
+	/**
+	 * <b>Description</b> : Creates the per request data loaders. Each loader collects the keys
+	 * requested at one level of the query and fetches them with a single batch call. Backend calls
+	 * run through the {@link BackendGuard}, with a timeout and a circuit breaker.
+	 *
+	 * @return DataLoaderRegistry
+	 */
+	public DataLoaderRegistry newDataLoaderRegistry() {
+		DataLoader<Long, Collection<ProductDetail>> details = DataLoader.newDataLoader(this::loadDetails);
+		DataLoader<Long, Collection<Product>> related = DataLoader.newDataLoader(this::loadRelated);
+		DataLoader<Long, ProductInstance> instance = DataLoader.newDataLoader(this::loadInstances);
+
+		DataLoader<PageKey, List<ProductDetail>> detailPages = DataLoader.newDataLoader(
+				keys -> loadPages(keys, PRODUCT_DETAIL, DETAILS_CONNECTION_BACKEND, this::getProductDetailPages));
+		DataLoader<PageKey, List<Product>> relatedPages = DataLoader.newDataLoader(
+				keys -> loadPages(keys, PRODUCT_RELATED, RELATED_CONNECTION_BACKEND, this::getRelatedOfferingPages));
+		DataLoader<Long, Integer> detailsCount = DataLoader.newDataLoader(
+				ids -> resolverCache.loadMany(PRODUCT_DETAIL, ids, DETAILS_COUNT,
+						missing -> backendGuard.call(DETAILS_COUNT_BACKEND, () -> countProductDetails(missing))));
+		DataLoader<Long, Integer> relatedCount = DataLoader.newDataLoader(
+				ids -> resolverCache.loadMany(PRODUCT_RELATED, ids, RELATED_COUNT,
+						missing -> backendGuard.call(RELATED_COUNT_BACKEND, () -> countRelatedOfferings(missing))));
+
+		return new DataLoaderRegistry()
+				.register(DETAILS, details)
+				.register(RELATED, related)
+				.register(INSTANCE, instance)
+				.register(DETAILS_CONNECTION, detailPages)
+				.register(RELATED_CONNECTION, relatedPages)
+				.register(DETAILS_COUNT, detailsCount)
+				.register(RELATED_COUNT, relatedCount);
+	}
+
+	private CompletableFuture<List<Collection<ProductDetail>>> loadDetails(List<Long> ids) {
+		return resolverCache.loadMany(PRODUCT_DETAIL, ids, "",
+				missing -> backendGuard.call(DETAILS_BACKEND, () -> getProductDetails(missing)));
+	}
+
+	private CompletableFuture<List<Collection<Product>>> loadRelated(List<Long> ids) {
+		return resolverCache.loadMany(PRODUCT_RELATED, ids, "",
+				missing -> backendGuard.call(RELATED_BACKEND, () -> getRelatedOfferings(missing)));
+	}
+
+	private CompletableFuture<List<ProductInstance>> loadInstances(List<Long> ids) {
+		return resolverCache.loadMany(PRODUCT_INSTANCE, ids, "",
+				missing -> backendGuard.call(INSTANCE_BACKEND, () -> getProductInstances(missing)));
+	}
+
+	/**
+	 * Loads the pages of a batch with one backend call per page window, so parents asking for the
+	 * same page share the call.
+	 */
+	private <V> CompletableFuture<List<List<V>>> loadPages(List<PageKey> keys, String type, String backend,
+			PageReader<V> reader) {
+		Map<String, List<Integer>> windows = new LinkedHashMap<>();
+		for (int i = 0; i < keys.size(); i++) {
+			windows.computeIfAbsent(keys.get(i).window(), window -> new ArrayList<>()).add(i);
+		}
+		List<List<V>> pages = new ArrayList<>(Collections.nCopies(keys.size(), null));
+		List<CompletableFuture<Void>> loads = new ArrayList<>(windows.size());
+		for (Map.Entry<String, List<Integer>> window : windows.entrySet()) {
+			List<Integer> positions = window.getValue();
+			PageKey first = keys.get(positions.get(0));
+			List<Long> ids = new ArrayList<>(positions.size());
+			positions.forEach(position -> ids.add(keys.get(position).getParentId()));
+			loads.add(resolverCache.<Long, List<V>>loadMany(type, ids, backend + ":" + window.getKey(),
+					missing -> backendGuard.call(backend,
+							() -> reader.read(missing, first.getOffset(), first.getLimit())))
+					.thenAccept(values -> {
+						for (int i = 0; i < positions.size(); i++) {
+							pages.set(positions.get(i), values.get(i));
+						}
+					}));
+		}
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]))
+				.thenApply(done -> pages);
+	}
 
 	/**
-	 * <b>Description</b> : Get offering by offeringId
+	 * <b>Description</b> : Get offering by offeringId, and start loading the child collections the
+	 * query selects on it at the same time
 	 *
 	 * @return Product CompletableFuture
 	 */
-	public DataFetcher<Product> productById() {
+	public DataFetcher<CompletableFuture<Product>> productById() {
 		return env -> {
-			CompletableFuture<Product> promise = new CompletableFuture<>();
-
 			String productId = env.getArgument("id");
 			if (Strings.isNullOrEmpty(productId)) {
 				throw new CatalogException("BAD_USER_INPUT", "ID: Required field.");
 			}
 			Long id = Long.valueOf(productId);
 
-			DataFetchingFieldSelectionSet selectionSet = env.getSelectionSet();
+			Map<String, CompletableFuture<?>> children = prefetch(id, Lookahead.selected(env, DETAILS, RELATED, INSTANCE));
+			return resolverCache.<Long, Product>load(PRODUCT, id, "",
+					key -> backendGuard.call(PRODUCT_BACKEND, () -> getProduct(key)))
+					.thenApply(product -> product == null || children.isEmpty()
+							? product : new PrefetchedProduct(product, children));
+		};
+	}
 
-			Product product = new Product();
-			product.setId(id);
-			product.setName("ProductName");
-			product.setCategoryName("The Category Name");
-			product.setDescription("Here is the product description.");
+	/**
+	 * Starts the loads of the given children of an offering. Each goes through the cache, timeout and
+	 * circuit breaker of its own field, as its data loader would, so a slow child only fails that field.
+	 * <p>
+	 * This makes one backend call per selected child, not one call for the offering and all of its
+	 * children: a combined call would share one timeout and breaker, and a slow child would fail its
+	 * siblings and the offering with it. The calls start together with the offering's, so their round
+	 * trips overlap rather than add up, and each child is cached on its own.
+	 *
+	 * @param include names of the child fields the query selects
+	 * @return the load of each child field, by field name
+	 */
+	protected Map<String, CompletableFuture<?>> prefetch(Long id, Set<String> include) {
+		if (include.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		List<Long> ids = Collections.singletonList(id);
+		Map<String, CompletableFuture<?>> children = new HashMap<>();
+		if (include.contains(DETAILS)) {
+			children.put(DETAILS, loadDetails(ids).thenApply(values -> values.get(0)));
+		}
+		if (include.contains(RELATED)) {
+			children.put(RELATED, loadRelated(ids).thenApply(values -> values.get(0)));
+		}
+		if (include.contains(INSTANCE)) {
+			children.put(INSTANCE, loadInstances(ids).thenApply(values -> values.get(0)));
+		}
+		return children;
+	}
 
-			if (selectionSet.contains("details")) {
-				product.setDetails(getProductDetails(id));
-			}
-			return product;
+	/**
+	 * <b>Description</b> : Update the fields of an offering given in the input; the write is coalesced
+	 * with concurrent updates of the same offering and batched with those of other offerings
+	 *
+	 * @return Product CompletableFuture, completed once the write is committed
+	 */
+	public DataFetcher<CompletableFuture<Product>> updateProduct() {
+		return env -> {
+			Map<String, Object> input = env.getArgument("input");
+			ProductUpdate update = new ProductUpdate(productId(input.get("id"), "input.id"));
+			update.setName((String) input.get("name"));
+			update.setCategoryName((String) input.get("categoryName"));
+			update.setDescription((String) input.get("description"));
+			update.setImage((String) input.get("image"));
+			return catalogWriter.submit(update);
 		};
 	}
 
 	/**
-	 * <b>Description</b> : Get offering details by offeringId
+	 * <b>Description</b> : Insert or replace offering details by detail id
 	 *
-	 * @return ProductDetail CompletableFuture
+	 * @return Product CompletableFuture, completed once the write is committed
 	 */
-	public DataFetcher<Collection<ProductDetail>> productDetail() {
-
+	public DataFetcher<CompletableFuture<Product>> upsertProductDetails() {
 		return env -> {
-			Product product = env.getSource();
-			Long id = product.getId();
-			return getProductDetails(id);
+			ProductUpdate update = new ProductUpdate(productId(env.getArgument("productId"), "productId"));
+			List<Map<String, Object>> details = env.getArgument("details");
+			List<ProductDetail> upserts = new ArrayList<>(details.size());
+			for (Map<String, Object> input : details) {
+				ProductDetail detail = new ProductDetail();
+				detail.id = Long.valueOf(String.valueOf(input.get("id")));
+				detail.name = (String) input.get("name");
+				detail.type = (String) input.get("type");
+				detail.description = (String) input.get("description");
+				detail.display = (String) input.get("display");
+				detail.image = (String) input.get("image");
+				detail.link = (String) input.get("link");
+				detail.linkCaption = (String) input.get("linkCaption");
+				detail.header = Boolean.TRUE.equals(input.get("header"));
+				detail.card = Boolean.TRUE.equals(input.get("card"));
+				upserts.add(detail);
+			}
+			update.upsertDetails(upserts);
+			return catalogWriter.submit(update);
 		};
 	}
 
 	/**
-	 * <b>Description</b> : Get offering instance by requestId
+	 * <b>Description</b> : Subscribe to the status changes of the instance of an offering
 	 *
-	 * @return ProductInstance CompletableFuture
+	 * @return ProductInstance Publisher
 	 */
-	public DataFetcher<CompletionStage<ProductInstance>> productInstance() {
+	public DataFetcher<Publisher<ProductInstance>> instanceStatusChanged() {
 		return env -> {
-			CompletableFuture<ProductInstance> promise = new CompletableFuture<>();
-			Long requestId = Long.valueOf(env.getArgument("id"));
-			ProductInstance instance = new ProductInstance();
-			instance.id = requestId;
-			instance.name = "instanceName";
-			promise.complete(instance);
-			return promise;
+			String productId = env.getArgument("productId");
+			if (Strings.isNullOrEmpty(productId)) {
+				throw new CatalogException("BAD_USER_INPUT", "productId: Required field.");
+			}
+			return instanceStatusEvents.instanceStatusChanged(Long.valueOf(productId));
 		};
 	}
 
-	public DataFetcher<CompletableFuture<Collection<Product>>> relatedOfferings() {
+	/**
+	 * <b>Description</b> : Get one page of offering details by offeringId
+	 *
+	 * @return ProductDetail Connection CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Connection<ProductDetail>>> productDetailConnection() {
+		return connection(DETAILS_CONNECTION);
+	}
+
+	/**
+	 * <b>Description</b> : Get one page of related offerings by offeringId
+	 *
+	 * @return Product Connection CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Connection<Product>>> relatedOfferingConnection() {
+		return connection(RELATED_CONNECTION);
+	}
+
+	/**
+	 * <b>Description</b> : Count the details of the offering of a connection, only when selected
+	 *
+	 * @return Integer CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Integer>> productDetailCount() {
+		return totalCount(DETAILS_COUNT);
+	}
+
+	/**
+	 * <b>Description</b> : Count the related offerings of the offering of a connection, only when selected
+	 *
+	 * @return Integer CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Integer>> relatedOfferingCount() {
+		return totalCount(RELATED_COUNT);
+	}
+
+	private static <V> DataFetcher<CompletableFuture<Connection<V>>> connection(String loaderName) {
 		return env -> {
 			Product product = env.getSource();
-			Long offeringId = product.getId();
-			CompletableFuture<Collection<Product>> promise = new CompletableFuture<>();
-
-			List<Product> offerings = new ArrayList<>();
-			Product offering = new Product();
-			offering.setId(offeringId);
-			offering.setCategoryName("The Category Name");
-			offering.setDescription("Here is the product description.");
-			offerings.add(offering);
-			promise.complete(offerings);
-			return promise;
+			int first = Pagination.first(env.getArgument("first"));
+			int offset = Pagination.offset(env.getArgument("after"));
+			DataLoader<PageKey, List<V>> loader = env.getDataLoader(loaderName);
+			// one row more than the page tells whether there is a next page
+			return loader.load(new PageKey(product.getId(), offset, first + 1))
+					.thenApply(rows -> Pagination.connection(product.getId(), rows, offset, first));
+		};
+	}
+
+	private static DataFetcher<CompletableFuture<Integer>> totalCount(String loaderName) {
+		return env -> {
+			Connection<?> connection = env.getSource();
+			DataLoader<Long, Integer> loader = env.getDataLoader(loaderName);
+			return loader.load(connection.getParentId());
 		};
 	}
 
-	private List<ProductDetail> getProductDetails(Long id) {
-		List<ProductDetail> details = new ArrayList<>();
-		ProductDetail detail = new ProductDetail();
-		detail.description = "The product detailed description.";
-		detail.card = true;
-		detail.id = id;
-		detail.display = "display";
-		detail.image = "NA";
-		detail.name = "product details";
-		details.add(detail);
-		return details;
+	/**
+	 * <b>Description</b> : Get offering details by offeringId, unless already loading with the offering
+	 *
+	 * @return ProductDetail CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Collection<ProductDetail>>> productDetail() {
+		return Lookahead.reuseOrLoad(Product::getDetails, DETAILS, Product::getId);
+	}
+
+	/**
+	 * <b>Description</b> : Get offering instance by offeringId, unless already loading with the offering
+	 *
+	 * @return ProductInstance CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<ProductInstance>> productInstance() {
+		return Lookahead.reuseOrLoad(Product::getInstance, INSTANCE, Product::getId);
+	}
+
+	/**
+	 * <b>Description</b> : Get related offerings by offeringId, unless already loading with the offering
+	 *
+	 * @return Product CompletableFuture
+	 */
+	public DataFetcher<CompletableFuture<Collection<Product>>> relatedOfferings() {
+		return Lookahead.reuseOrLoad(Product::getRelated, RELATED, Product::getId);
+	}
+
+	private static Long productId(Object value, String field) {
+		if (value == null || Strings.isNullOrEmpty(value.toString())) {
+			throw new CatalogException("BAD_USER_INPUT", field + ": Required field.");
+		}
+		return Long.valueOf(value.toString());
+	}
+
+	/**
+	 * Backend call: one offering, without its child collections.
+	 *
+	 * @return the offering, null if it does not exist
+	 */
+	protected Product getProduct(Long id) {
+		return catalogRepository.findProducts(Collections.singletonList(id)).get(0);
+	}
+
+	/**
+	 * Backend call: details of all given offerings, in the order of the ids.
+	 */
+	protected List<Collection<ProductDetail>> getProductDetails(List<Long> ids) {
+		return catalogRepository.findDetailsByProductIds(ids);
+	}
+
+	/**
+	 * Backend call: related offerings of all given offerings, in the order of the ids.
+	 */
+	protected List<Collection<Product>> getRelatedOfferings(List<Long> ids) {
+		return catalogRepository.findRelatedByProductIds(ids);
+	}
+
+	/**
+	 * Backend call: one window of the details of all given offerings, in the order of the ids.
+	 */
+	protected List<List<ProductDetail>> getProductDetailPages(List<Long> ids, int offset, int limit) {
+		return catalogRepository.findDetailPages(ids, offset, limit);
+	}
+
+	/**
+	 * Backend call: one window of the related offerings of all given offerings, in the order of the ids.
+	 */
+	protected List<List<Product>> getRelatedOfferingPages(List<Long> ids, int offset, int limit) {
+		return catalogRepository.findRelatedPages(ids, offset, limit);
+	}
+
+	/**
+	 * Backend call: the number of details of all given offerings, in the order of the ids.
+	 */
+	protected List<Integer> countProductDetails(List<Long> ids) {
+		return catalogRepository.countDetails(ids);
+	}
+
+	/**
+	 * Backend call: the number of related offerings of all given offerings, in the order of the ids.
+	 */
+	protected List<Integer> countRelatedOfferings(List<Long> ids) {
+		return catalogRepository.countRelated(ids);
+	}
+
+	/**
+	 * Backend call: the subscribed instance of all given offerings, in the order of the ids.
+	 */
+	protected List<ProductInstance> getProductInstances(List<Long> ids) {
+		return catalogRepository.findInstancesByProductIds(ids);
+	}
+
+	/**
+	 * Reads one window of a child list of each parent.
+	 */
+	@FunctionalInterface
+	private interface PageReader<V> {
+		List<List<V>> read(List<Long> parentIds, int offset, int limit);
 	}
 }
@@ -0,0 +1,200 @@
+package resolvers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import metrics.GraphQLMetrics;
+import play.Configuration;
+import play.Logger;
+import play.Logger.ALogger;
+import play.inject.ApplicationLifecycle;
+
+/**
+ * Dedicated executor for backend calls made by the data fetchers, so slow backends cannot starve the
+ * Play dispatcher serving HTTP. Resolvers may block in the calls they run here.
+ * <p>
+ * With {@code graphql.executor.mode = platform} it is a pool of {@code graphql.executor.threads} threads
+ * and a queue of {@code graphql.executor.queueSize} tasks. With {@code virtual}, every call gets its own
+ * virtual thread and at most {@code graphql.executor.maxConcurrency} calls run at once; on a runtime
+ * without virtual threads (before Java 21) the platform pool is used instead. Either way a call that
+ * does not fit is rejected with a {@link RejectedExecutionException} instead of queueing without
+ * limit, and the controller answers 503 while the executor is saturated.
+ */
+@Singleton
+public class ResolverExecutor implements Executor {
+
+	public static final String MODE_PLATFORM = "platform";
+	public static final String MODE_VIRTUAL = "virtual";
+
+	private static final ALogger logger = Logger.of(ResolverExecutor.class);
+
+	private final ExecutorService executor;
+	/** The platform pool, null when running on virtual threads. */
+	private final ThreadPoolExecutor pool;
+	/** Free slots for concurrent calls on virtual threads, null on the platform pool. */
+	private final Semaphore permits;
+	private final int maxConcurrency;
+	private final LongAdder rejected = new LongAdder();
+	private final int retryAfterSeconds;
+
+	@Inject
+	public ResolverExecutor(Configuration configuration, GraphQLMetrics metrics, ApplicationLifecycle lifecycle) {
+		String mode = configuration.getString("graphql.executor.mode", MODE_PLATFORM);
+		int threads = configuration.getInt("graphql.executor.threads", 64);
+		int queueSize = configuration.getInt("graphql.executor.queueSize", 1000);
+		this.maxConcurrency = configuration.getInt("graphql.executor.maxConcurrency", 10000);
+		this.retryAfterSeconds = configuration.getInt("graphql.executor.retryAfter", 1);
+
+		ExecutorService virtual = MODE_VIRTUAL.equals(mode) ? newVirtualThreadPerTaskExecutor() : null;
+		if (virtual != null) {
+			this.executor = virtual;
+			this.pool = null;
+			this.permits = new Semaphore(maxConcurrency);
+			logger.info("Resolvers run on virtual threads, at most {} at once", maxConcurrency);
+		} else {
+			if (MODE_VIRTUAL.equals(mode)) {
+				logger.warn("Virtual threads are not supported by this runtime, falling back to a platform pool");
+			}
+			this.pool = newPlatformPool(threads, queueSize);
+			this.executor = pool;
+			this.permits = null;
+			logger.info("Resolver pool of {} threads with a queue of {} tasks", threads, queueSize);
+		}
+
+		metrics.gauge("graphql_executor_queue_depth", "Backend calls waiting for a resolver thread.",
+				() -> pool != null ? pool.getQueue().size() : 0);
+		metrics.gauge("graphql_executor_active_threads", "Resolver threads running a backend call.",
+				() -> pool != null ? pool.getActiveCount() : maxConcurrency - permits.availablePermits());
+		metrics.gauge("graphql_executor_pool_size", "Platform resolver threads currently started.",
+				() -> pool != null ? pool.getPoolSize() : 0);
+		metrics.gauge("graphql_executor_rejected", "Backend calls rejected because the executor was saturated.",
+				rejected::sum);
+
+		lifecycle.addStopHook(() -> {
+			executor.shutdown();
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (permits == null) {
+			executor.execute(task);
+			return;
+		}
+		if (!permits.tryAcquire()) {
+			rejected.increment();
+			throw new RejectedExecutionException("Too many resolver calls in flight (" + maxConcurrency + ")");
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs a blocking backend call on the executor. Cancelling the returned future interrupts the call,
+	 * or drops it if it has not started yet, so that a call nobody waits for gives its thread back.
+	 *
+	 * @throws RejectedExecutionException when the executor is saturated
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> call) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		FutureTask<T> task = new FutureTask<T>(call::get) {
+			@Override
+			protected void done() {
+				if (isCancelled()) {
+					return;
+				}
+				try {
+					result.complete(get());
+				} catch (ExecutionException e) {
+					result.completeExceptionally(e.getCause());
+				} catch (InterruptedException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		};
+		result.whenComplete((value, e) -> {
+			if (result.isCancelled()) {
+				task.cancel(true);
+			}
+		});
+		execute(task);
+		return result;
+	}
+
+	/**
+	 * @return true when new backend calls would be rejected
+	 */
+	public boolean isSaturated() {
+		return pool != null ? pool.getQueue().remainingCapacity() == 0 : permits.availablePermits() == 0;
+	}
+
+	/**
+	 * @return true when calls run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return pool == null;
+	}
+
+	/**
+	 * @return seconds a client should wait before retrying a request shed while saturated
+	 */
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	private ThreadPoolExecutor newPlatformPool(int threads, int queueSize) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor platform = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				task -> {
+					Thread thread = new Thread(task, "graphql-resolver-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				(task, executor) -> {
+					rejected.increment();
+					throw new RejectedExecutionException("Resolver queue full (" + queueSize + " tasks)");
+				});
+		platform.allowCoreThreadTimeOut(true);
+		return platform;
+	}
+
+	/**
+	 * Looked up reflectively so the application still compiles and runs on Java 8.
+	 *
+	 * @return {@code Executors.newVirtualThreadPerTaskExecutor()}, null if the runtime has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package schema;
+
+import graphql.analysis.QueryTraversal;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.language.Argument;
+import graphql.language.Definition;
+import graphql.language.Directive;
+import graphql.language.Document;
+import graphql.language.IntValue;
+import graphql.language.OperationDefinition;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the {@code @cacheControl(maxAge:)} hints declared in the SDL, following Apollo's rules: a query
+ * may be cached for the smallest maxAge among the fields it selects. A field takes the hint on its
+ * definition, else the one on the object type it returns. Root fields and fields returning objects
+ * without a hint have a maxAge of 0; scalar fields have no say.
+ */
+public final class CacheControl {
+
+	public static final String DIRECTIVE = "cacheControl";
+	public static final String MAX_AGE = "maxAge";
+
+	private CacheControl() {
+	}
+
+	/**
+	 * @param document a document already validated against the schema
+	 * @return the seconds the response of the operation may be cached, 0 if it must not be cached
+	 */
+	public static int maxAge(GraphQLSchema schema, Document document, String operationName,
+			Map<String, Object> variables) {
+		OperationDefinition operation = operation(document, operationName);
+		if (operation == null || operation.getOperation() != OperationDefinition.Operation.QUERY) {
+			return 0;
+		}
+
+		int[] maxAge = { Integer.MAX_VALUE };
+		QueryTraversal.newQueryTraversal()
+				.schema(schema)
+				.document(document)
+				.operationName(operationName)
+				.variables(variables)
+				.build()
+				.visitPreOrder(new QueryVisitorStub() {
+					@Override
+					public void visitField(QueryVisitorFieldEnvironment env) {
+						Integer hint = hint(env.getFieldDefinition(), env.getParentEnvironment() == null);
+						if (hint != null) {
+							maxAge[0] = Math.min(maxAge[0], hint);
+						}
+					}
+				});
+		return maxAge[0] == Integer.MAX_VALUE ? 0 : maxAge[0];
+	}
+
+	private static Integer hint(GraphQLFieldDefinition field, boolean root) {
+		if (field.getDefinition() != null) {
+			Integer hint = hint(field.getDefinition().getDirectives());
+			if (hint != null) {
+				return hint;
+			}
+		}
+		GraphQLType type = field.getType();
+		while (type instanceof GraphQLModifiedType) {
+			type = ((GraphQLModifiedType) type).getWrappedType();
+		}
+		if (type instanceof GraphQLObjectType && ((GraphQLObjectType) type).getDefinition() != null) {
+			Integer hint = hint(((GraphQLObjectType) type).getDefinition().getDirectives());
+			if (hint != null) {
+				return hint;
+			}
+		}
+		boolean leaf = type instanceof GraphQLScalarType || type instanceof GraphQLEnumType;
+		return root || !leaf ? 0 : null;
+	}
+
+	private static Integer hint(List<Directive> directives) {
+		for (Directive directive : directives) {
+			if (!DIRECTIVE.equals(directive.getName())) {
+				continue;
+			}
+			for (Argument argument : directive.getArguments()) {
+				if (MAX_AGE.equals(argument.getName()) && argument.getValue() instanceof IntValue) {
+					return ((IntValue) argument.getValue()).getValue().intValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the operation of the document that a request with the operation name runs, null if the
+	 *         name matches none or is missing while the document has several operations
+	 */
+	public static OperationDefinition operation(Document document, String operationName) {
+		OperationDefinition found = null;
+		for (Definition<?> definition : document.getDefinitions()) {
+			if (!(definition instanceof OperationDefinition)) {
+				continue;
+			}
+			OperationDefinition operation = (OperationDefinition) definition;
+			if (operationName == null || operationName.isEmpty()) {
+				if (found != null) {
+					return null;
+				}
+				found = operation;
+			} else if (operationName.equals(operation.getName())) {
+				return operation;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,62 @@
+package schema;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQL;
+import graphql.execution.instrumentation.DeferredFieldInstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationDeferredFieldParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records where the @defer results of an execution belong.
+ * <p>
+ * The engine publishes each deferred field as a plain {@link ExecutionResult} holding the value of the
+ * field alone, without its path. It resolves the deferred fields one at a time, in the order it
+ * publishes them, each after {@link #beginDeferredField}; so the n-th path recorded there is the path
+ * of the n-th published result. The paths are handed over under {@value #DEFERRED_PATHS} in the
+ * extensions of the initial result, next to the publisher of the deferred results, and the queue keeps
+ * filling as the deferred fields start.
+ */
+public class DeferredPathsInstrumentation extends SimpleInstrumentation {
+
+	/** Extension of the initial result: the {@link Queue} of the paths, as lists of segments. */
+	public static final String DEFERRED_PATHS = "deferredPaths";
+
+	@Override
+	public InstrumentationState createState() {
+		return new Paths();
+	}
+
+	@Override
+	public DeferredFieldInstrumentationContext beginDeferredField(InstrumentationDeferredFieldParameters parameters) {
+		Paths paths = parameters.getInstrumentationState();
+		paths.queue.add(parameters.getExecutionStepInfo().getPath().toList());
+		return super.beginDeferredField(parameters);
+	}
+
+	@Override
+	public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+			InstrumentationExecutionParameters parameters) {
+		Map<Object, Object> extensions = executionResult.getExtensions();
+		if (extensions == null || !extensions.containsKey(GraphQL.DEFERRED_RESULTS)) {
+			return CompletableFuture.completedFuture(executionResult);
+		}
+		Paths paths = parameters.getInstrumentationState();
+		Map<Object, Object> withPaths = new LinkedHashMap<>(extensions);
+		withPaths.put(DEFERRED_PATHS, paths.queue);
+		return CompletableFuture.completedFuture(
+				new ExecutionResultImpl(executionResult.getData(), executionResult.getErrors(), withPaths));
+	}
+
+	private static final class Paths implements InstrumentationState {
+		private final Queue<List<Object>> queue = new ConcurrentLinkedQueue<>();
+	}
+}
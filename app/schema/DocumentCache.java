@@ -0,0 +1,56 @@
+package schema;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of parsed and validated query documents, keyed by query text. A hit skips both the
+ * parser and the validator. The operation name is not part of the key: the document holds all of its
+ * operations and is validated as a whole. Entries are only valid for the schema they were
+ * validated against, so every {@link GraphQLEngine} gets its own instance.
+ */
+public class DocumentCache implements PreparsedDocumentProvider {
+
+	private final Cache<String, PreparsedDocumentEntry> cache;
+
+	public DocumentCache(long maxEntries) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxEntries)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public PreparsedDocumentEntry get(String query, Function<String, PreparsedDocumentEntry> computeFunction) {
+		try {
+			return cache.get(query, () -> computeFunction.apply(query));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			// e.g. an AbortExecutionException of the query limits: nothing is cached, the caller handles it
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new UncheckedExecutionException(cause);
+		}
+	}
+
+	/**
+	 * @return hit, miss and eviction counters since this cache was created
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+}
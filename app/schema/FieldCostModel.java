@@ -0,0 +1,123 @@
+package schema;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValue;
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.QueryTraversal;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.language.Document;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import play.Configuration;
+import resolvers.Pagination;
+
+/**
+ * Per field cost weights used to estimate how expensive a query is before it runs.
+ * <p>
+ * A field costs its configured weight ({@code graphql.limits.fieldCosts.<Type>.<field>}, or
+ * {@code graphql.limits.defaultFieldCost}) plus the cost of its selection, multiplied by
+ * {@code graphql.limits.listFactor} when the field returns a list. The list of a connection holds one
+ * page, so it is multiplied by the {@code first} argument of the connection field instead, capped at
+ * {@link Pagination#MAX_PAGE_SIZE}.
+ */
+public class FieldCostModel {
+
+	private static final String CONNECTION_SUFFIX = "Connection";
+	private static final String FIRST = "first";
+
+	private final Map<String, Integer> weights;
+	private final int defaultCost;
+	private final int listFactor;
+
+	public FieldCostModel(Map<String, Integer> weights, int defaultCost, int listFactor) {
+		this.weights = Collections.unmodifiableMap(new HashMap<>(weights));
+		this.defaultCost = defaultCost;
+		this.listFactor = listFactor;
+	}
+
+	public static FieldCostModel fromConfiguration(Configuration configuration) {
+		Map<String, Integer> weights = new HashMap<>();
+		Configuration fieldCosts = configuration.getConfig("graphql.limits.fieldCosts");
+		if (fieldCosts != null) {
+			Config costs = fieldCosts.underlying();
+			for (Map.Entry<String, ConfigValue> entry : costs.entrySet()) {
+				weights.put(entry.getKey(), costs.getInt(entry.getKey()));
+			}
+		}
+		return new FieldCostModel(weights,
+				configuration.getInt("graphql.limits.defaultFieldCost", 1),
+				configuration.getInt("graphql.limits.listFactor", 5));
+	}
+
+	/**
+	 * @param typeName name of the type declaring the field
+	 * @param parentArguments arguments of the field whose selection holds this one, with their defaults;
+	 *            empty for a root field
+	 * @param childCost cost of the field's own selection set
+	 */
+	public int cost(String typeName, GraphQLFieldDefinition field, Map<String, Object> parentArguments,
+			int childCost) {
+		Integer weight = weights.get(typeName + "." + field.getName());
+		return (weight != null ? weight : defaultCost) + multiplier(typeName, field, parentArguments) * childCost;
+	}
+
+	private int multiplier(String typeName, GraphQLFieldDefinition field, Map<String, Object> parentArguments) {
+		if (!isList(field.getType())) {
+			return 1;
+		}
+		Object first = parentArguments.get(FIRST);
+		if (typeName.endsWith(CONNECTION_SUFFIX) && first instanceof Number) {
+			return Math.max(0, Math.min(((Number) first).intValue(), Pagination.MAX_PAGE_SIZE));
+		}
+		return listFactor;
+	}
+
+	/**
+	 * Estimates the cost of one operation of a validated document before it runs. This is the value
+	 * {@link #calculator()} yields for the complexity limit.
+	 *
+	 * @param operationName the operation to estimate, may be null if the document has only one
+	 */
+	public int estimate(GraphQLSchema schema, Document document, String operationName, Map<String, Object> variables) {
+		QueryTraversal traversal = QueryTraversal.newQueryTraversal()
+				.schema(schema)
+				.document(document)
+				.operationName(operationName)
+				.variables(variables)
+				.build();
+		// cost of each selection set, keyed by the field owning it; the null key is the operation itself
+		Map<QueryVisitorFieldEnvironment, Integer> selectionCosts = new HashMap<>();
+		traversal.visitPostOrder(new QueryVisitorStub() {
+			@Override
+			public void visitField(QueryVisitorFieldEnvironment env) {
+				int childCost = selectionCosts.getOrDefault(env, 0);
+				Map<String, Object> parentArguments = env.getParentEnvironment() == null
+						? Collections.emptyMap() : env.getParentEnvironment().getArguments();
+				// the parent of the fields selected on a list field is the list type, which has no name
+				String typeName = GraphQLTypeUtil.unwrapAll(env.getParentType()).getName();
+				int fieldCost = cost(typeName, env.getFieldDefinition(), parentArguments, childCost);
+				selectionCosts.merge(env.getParentEnvironment(), fieldCost, Integer::sum);
+			}
+		});
+		return selectionCosts.getOrDefault(null, 0);
+	}
+
+	public FieldComplexityCalculator calculator() {
+		return (env, childComplexity) -> cost(env.getParentType().getName(), env.getFieldDefinition(),
+				env.getParentEnvironment() == null ? Collections.emptyMap() : env.getParentEnvironment().getArguments(),
+				childComplexity);
+	}
+
+	private static boolean isList(GraphQLType type) {
+		GraphQLType unwrapped = type instanceof GraphQLNonNull ? ((GraphQLNonNull) type).getWrappedType() : type;
+		return unwrapped instanceof GraphQLList;
+	}
+}
@@ -0,0 +1,101 @@
+package schema;
+
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import graphql.InvalidSyntaxError;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import graphql.validation.Validator;
+import java.util.List;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * An immutable, versioned pairing of a schema and the engine built from it.
+ * A request keeps the instance it started with, even if a newer one is swapped in meanwhile.
+ */
+public class GraphQLEngine {
+
+	private final long version;
+	private final GraphQLSchema schema;
+	private final GraphQL graphQL;
+	private final GraphQL tracedGraphQL;
+	private final DocumentCache documentCache;
+	private final Instrumentation instrumentation;
+
+	/**
+	 * @param instrumentation the instrumentation of the untraced engine, which {@link #document} parses
+	 *            and validates with
+	 */
+	public GraphQLEngine(long version, GraphQLSchema schema, GraphQL graphQL, GraphQL tracedGraphQL,
+			DocumentCache documentCache, Instrumentation instrumentation) {
+		this.version = version;
+		this.schema = schema;
+		this.graphQL = graphQL;
+		this.tracedGraphQL = tracedGraphQL;
+		this.documentCache = documentCache;
+		this.instrumentation = instrumentation;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public GraphQLSchema getSchema() {
+		return schema;
+	}
+
+	public GraphQL getGraphQL() {
+		return graphQL;
+	}
+
+	/**
+	 * @param traced true for the engine that adds Apollo tracing under {@code extensions.tracing}
+	 */
+	public GraphQL getGraphQL(boolean traced) {
+		return traced ? tracedGraphQL : graphQL;
+	}
+
+	public DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
+	/**
+	 * Parses and validates the query the way the engine does, instrumentation included, or takes the
+	 * outcome from the {@link DocumentCache}. A request parses once: what it does with the document
+	 * before executing goes through here, and the execution then finds the document cached.
+	 *
+	 * @return the document, or the syntax or validation errors of the query
+	 */
+	public PreparsedDocumentEntry document(ExecutionInput executionInput) {
+		return documentCache.get(executionInput.getQuery(), query -> parseAndValidate(executionInput));
+	}
+
+	private PreparsedDocumentEntry parseAndValidate(ExecutionInput executionInput) {
+		InstrumentationExecutionParameters parameters = new InstrumentationExecutionParameters(executionInput, schema,
+				instrumentation.createState(new InstrumentationCreateStateParameters(schema, executionInput)));
+		InstrumentationContext<Document> parse = instrumentation.beginParse(parameters);
+		Document document;
+		try {
+			document = new Parser().parseDocument(executionInput.getQuery());
+		} catch (ParseCancellationException e) {
+			parse.onCompleted(null, e);
+			return new PreparsedDocumentEntry(InvalidSyntaxError.toInvalidSyntaxError(e));
+		}
+		parse.onCompleted(document, null);
+
+		InstrumentationContext<List<ValidationError>> validation = instrumentation.beginValidation(
+				new InstrumentationValidationParameters(executionInput, document, schema,
+						parameters.getInstrumentationState()));
+		List<ValidationError> errors = new Validator().validateDocument(schema, document);
+		validation.onCompleted(errors, null);
+		return errors.isEmpty() ? new PreparsedDocumentEntry(document) : new PreparsedDocumentEntry(errors);
+	}
+}
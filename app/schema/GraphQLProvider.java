@@ -0,0 +1,199 @@
+package schema;
+
+import cache.ProductCollectingInstrumentation;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
+import graphql.execution.instrumentation.tracing.TracingInstrumentation;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.PropertyDataFetcher;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import graphql.schema.idl.TypeRuntimeWiring;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import metrics.GraphQLMetrics;
+import metrics.MetricsInstrumentation;
+import org.dataloader.DataLoaderRegistry;
+import play.Configuration;
+import play.Logger;
+import play.Logger.ALogger;
+import play.inject.ApplicationLifecycle;
+import resolvers.ProductDataFetcher;
+
+/**
+ * Schema registry. Builds the executable schema and the {@link GraphQL} engine at application
+ * start and, when enabled, rebuilds them in the background whenever the SDL file changes.
+ * A successfully rebuilt engine is swapped in atomically; a failed rebuild keeps the old one.
+ */
+@Singleton
+public class GraphQLProvider {
+
+	private static final ALogger logger = Logger.of(GraphQLProvider.class);
+	private static final String SCHEMA_RESOURCE = "schema.graphqls";
+
+	private final ProductDataFetcher productDataFetcher;
+	private final long documentCacheSize;
+	private final int maxDepth;
+	private final int maxComplexity;
+	private final FieldCostModel costModel;
+	private final GraphQLMetrics metrics;
+	private final AtomicReference<GraphQLEngine> current = new AtomicReference<>();
+
+	@Inject
+	public GraphQLProvider(ProductDataFetcher productDataFetcher, GraphQLMetrics metrics, Configuration configuration,
+			ApplicationLifecycle lifecycle) throws IOException {
+		this.productDataFetcher = productDataFetcher;
+		this.metrics = metrics;
+		this.documentCacheSize = configuration.getLong("graphql.documentCache.maxEntries", 1000L);
+		this.maxDepth = configuration.getInt("graphql.limits.maxDepth", 10);
+		this.maxComplexity = configuration.getInt("graphql.limits.maxComplexity", 1000);
+		this.costModel = FieldCostModel.fromConfiguration(configuration);
+
+		long start = System.nanoTime();
+		current.set(newEngine(1, buildSchema()));
+		logger.info("GraphQL schema built in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+		metrics.gauge("graphql_schema_version", "Version of the schema serving new requests.",
+				() -> current().getVersion());
+		metrics.gauge("graphql_document_cache_hits", "Query document cache hits for the current schema version.",
+				() -> current().getDocumentCache().stats().hitCount());
+		metrics.gauge("graphql_document_cache_misses", "Query document cache misses for the current schema version.",
+				() -> current().getDocumentCache().stats().missCount());
+		metrics.gauge("graphql_document_cache_evictions", "Query document cache evictions for the current schema version.",
+				() -> current().getDocumentCache().stats().evictionCount());
+
+		File schemaFile = schemaFile();
+		if (configuration.getBoolean("graphql.schema.watch", false) && schemaFile.isFile()) {
+			SchemaFileWatcher watcher = new SchemaFileWatcher(schemaFile.toPath(), this::reload);
+			watcher.start();
+			lifecycle.addStopHook(() -> {
+				watcher.close();
+				return CompletableFuture.completedFuture(null);
+			});
+		}
+	}
+
+	/**
+	 * @return the engine new requests should execute on; callers should hold on to it for the
+	 *         whole request
+	 */
+	public GraphQLEngine current() {
+		return current.get();
+	}
+
+	/**
+	 * @return the field weights behind the complexity limit
+	 */
+	public FieldCostModel getCostModel() {
+		return costModel;
+	}
+
+	public GraphQL graphQL() {
+		return current().getGraphQL();
+	}
+
+	/**
+	 * @return fresh data loaders for one request; they must not be shared between requests
+	 */
+	public DataLoaderRegistry newDataLoaderRegistry() {
+		return productDataFetcher.newDataLoaderRegistry();
+	}
+
+	/**
+	 * Rebuilds the schema from disk and swaps it in if it builds. Never called on the request path.
+	 *
+	 * @return true if a new engine was swapped in
+	 */
+	public synchronized boolean reload() {
+		long start = System.nanoTime();
+		try {
+			GraphQLSchema schema = buildSchema();
+			GraphQLEngine previous = current.get();
+			current.set(newEngine(previous.getVersion() + 1, schema));
+			logger.info("GraphQL schema reloaded as version {} in {} ms", previous.getVersion() + 1,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			return true;
+		} catch (Exception e) {
+			logger.error("Schema reload failed, keeping version " + current.get().getVersion(), e);
+			return false;
+		}
+	}
+
+	GraphQLSchema buildSchema() throws UnsupportedEncodingException {
+		TypeDefinitionRegistry typeRegistry = new graphql.schema.idl.SchemaParser().parse(schemaFile());
+		RuntimeWiring runtimeWiring = buildWiring();
+		SchemaGenerator schemaGenerator = new SchemaGenerator();
+		return schemaGenerator.makeExecutableSchema(typeRegistry, runtimeWiring);
+	}
+
+	private File schemaFile() throws UnsupportedEncodingException {
+		URL resource = getClass().getClassLoader().getResource(SCHEMA_RESOURCE);
+		return new File(URLDecoder.decode(resource.getFile(), "UTF-8"));
+	}
+
+	private RuntimeWiring buildWiring() {
+		PropertyDataFetcher.clearReflectionCache();
+		return RuntimeWiring.newRuntimeWiring()
+				.type(TypeRuntimeWiring.newTypeWiring("Query")
+						.dataFetcher("productById", productDataFetcher.productById()))
+				.type(TypeRuntimeWiring.newTypeWiring("Mutation")
+						.dataFetcher("updateProduct", productDataFetcher.updateProduct())
+						.dataFetcher("upsertProductDetails", productDataFetcher.upsertProductDetails()))
+				.type(TypeRuntimeWiring.newTypeWiring("Subscription")
+						.dataFetcher("instanceStatusChanged", productDataFetcher.instanceStatusChanged()))
+				.type(TypeRuntimeWiring.newTypeWiring("Product")
+						.dataFetcher("details", productDataFetcher.productDetail())
+						.dataFetcher("instance", productDataFetcher.productInstance())
+						.dataFetcher("related", productDataFetcher.relatedOfferings())
+						.dataFetcher("detailsConnection", productDataFetcher.productDetailConnection())
+						.dataFetcher("relatedConnection", productDataFetcher.relatedOfferingConnection()))
+				.type(TypeRuntimeWiring.newTypeWiring("ProductDetailConnection")
+						.dataFetcher("totalCount", productDataFetcher.productDetailCount()))
+				.type(TypeRuntimeWiring.newTypeWiring("ProductConnection")
+						.dataFetcher("totalCount", productDataFetcher.relatedOfferingCount()))
+				.build();
+	}
+
+	private GraphQLEngine newEngine(long version, GraphQLSchema schema) {
+		DocumentCache documentCache = new DocumentCache(documentCacheSize);
+		return new GraphQLEngine(version, schema, newGraphQL(schema, documentCache, false),
+				newGraphQL(schema, documentCache, true), documentCache, newInstrumentation(false));
+	}
+
+	/**
+	 * @param traced whether to add Apollo tracing; kept out of the default engine so untraced requests
+	 *            do not pay for it
+	 */
+	GraphQL newGraphQL(GraphQLSchema schema, DocumentCache documentCache, boolean traced) {
+		return GraphQL.newGraphQL(schema)
+				.preparsedDocumentProvider(documentCache)
+				.instrumentation(newInstrumentation(traced))
+				.build();
+	}
+
+	private Instrumentation newInstrumentation(boolean traced) {
+		List<Instrumentation> instrumentations = new ArrayList<>();
+		instrumentations.add(new QueryLimitsInstrumentation(maxDepth, maxComplexity, costModel.calculator()));
+		instrumentations.add(new MetricsInstrumentation(metrics));
+		instrumentations.add(new ProductCollectingInstrumentation());
+		instrumentations.add(new DeferredPathsInstrumentation());
+		if (traced) {
+			instrumentations.add(new TracingInstrumentation());
+		}
+		instrumentations.add(new DataLoaderDispatcherInstrumentation());
+		return new ChainedInstrumentation(instrumentations);
+	}
+}
@@ -0,0 +1,50 @@
+package schema;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import java.util.Collections;
+
+/**
+ * Enforces the depth and complexity limits on every execution, with the variables it runs with.
+ * <p>
+ * The stock {@link MaxQueryDepthInstrumentation} and {@link MaxQueryComplexityInstrumentation} check
+ * during validation, which a document served from the {@link DocumentCache} skips; even then they would
+ * only see the variables of the document's first execution, while {@code relatedConnection(first: $n)}
+ * costs more for a larger {@code $n}. This runs their checks when each operation starts instead, before
+ * any field is fetched. An operation over a limit fails with an {@link AbortExecutionException}.
+ */
+public class QueryLimitsInstrumentation extends SimpleInstrumentation {
+
+	private final MaxQueryDepthInstrumentation maxDepth;
+	private final MaxQueryComplexityInstrumentation maxComplexity;
+
+	public QueryLimitsInstrumentation(int maxDepth, int maxComplexity, FieldComplexityCalculator calculator) {
+		this.maxDepth = new MaxQueryDepthInstrumentation(maxDepth);
+		this.maxComplexity = new MaxQueryComplexityInstrumentation(maxComplexity, calculator);
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+			InstrumentationExecuteOperationParameters parameters) {
+		ExecutionContext context = parameters.getExecutionContext();
+		ExecutionInput input = ExecutionInput.newExecutionInput()
+				.operationName(context.getOperationDefinition().getName())
+				.variables(context.getVariables())
+				.context(context.getContext())
+				.build();
+		InstrumentationValidationParameters validation = new InstrumentationValidationParameters(input,
+				context.getDocument(), context.getGraphQLSchema(), null);
+		maxDepth.beginValidation(validation).onCompleted(Collections.emptyList(), null);
+		maxComplexity.beginValidation(validation).onCompleted(Collections.emptyList(), null);
+		return super.beginExecuteOperation(parameters);
+	}
+}
@@ -0,0 +1,83 @@
+package schema;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import play.Logger;
+import play.Logger.ALogger;
+
+/**
+ * Watches a single file with an NIO {@link WatchService} and runs a callback on a
+ * background thread whenever the file is created or modified.
+ */
+class SchemaFileWatcher implements Runnable {
+
+	private static final ALogger logger = Logger.of(SchemaFileWatcher.class);
+
+	/** Editors often write a file in several steps; wait for the events to settle. */
+	private static final long DEBOUNCE_MILLIS = 200;
+
+	private final Path file;
+	private final Runnable onChange;
+	private final WatchService watchService;
+	private final Thread thread;
+
+	SchemaFileWatcher(Path file, Runnable onChange) throws IOException {
+		this.file = file.toAbsolutePath();
+		this.onChange = onChange;
+		this.watchService = this.file.getFileSystem().newWatchService();
+		this.file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+		this.thread = new Thread(this, "graphql-schema-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+		logger.info("Watching {} for schema changes", file);
+	}
+
+	void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing the schema watcher " + e);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = drain(key);
+				while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= drain(key);
+				}
+				if (changed) {
+					onChange.run();
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			logger.debug("Schema watcher stopped");
+		}
+	}
+
+	private boolean drain(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			Object context = event.context();
+			if (context instanceof Path && file.getFileName().equals(context)) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+}
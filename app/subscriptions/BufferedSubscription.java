@@ -0,0 +1,142 @@
+package subscriptions;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * One subscriber of a {@link Topic}, with a bounded buffer of the events it has not requested yet.
+ * <p>
+ * The topic offers events without ever blocking. A subscriber whose buffer is full is dropped with a
+ * {@link SlowConsumerException} instead of slowing down the topic or growing without bounds. Signals
+ * to the subscriber are serialized by an emitting flag, so a subscriber may call {@link #request}
+ * from {@code onNext}.
+ */
+final class BufferedSubscription<T> implements Subscription {
+
+	private final Subscriber<? super T> subscriber;
+	private final int bufferSize;
+	private final Consumer<BufferedSubscription<T>> onTerminate;
+	private final ArrayDeque<T> buffer = new ArrayDeque<>();
+
+	private long demand;
+	private boolean emitting;
+	private boolean terminated;
+	private boolean completed;
+	private Throwable error;
+
+	/**
+	 * @param onTerminate called when the subscription ends, whatever the reason; must be idempotent
+	 */
+	BufferedSubscription(Subscriber<? super T> subscriber, int bufferSize,
+			Consumer<BufferedSubscription<T>> onTerminate) {
+		this.subscriber = subscriber;
+		this.bufferSize = bufferSize;
+		this.onTerminate = onTerminate;
+	}
+
+	/**
+	 * @return false if the subscriber was dropped because its buffer is full
+	 */
+	boolean offer(T event) {
+		boolean accepted = true;
+		synchronized (this) {
+			if (terminated || completed || error != null) {
+				return true;
+			}
+			if (buffer.size() >= bufferSize) {
+				buffer.clear();
+				error = new SlowConsumerException(bufferSize);
+				accepted = false;
+			} else {
+				buffer.add(event);
+			}
+		}
+		if (!accepted) {
+			onTerminate.accept(this);
+		}
+		drain();
+		return accepted;
+	}
+
+	synchronized boolean isTerminated() {
+		return terminated || error != null;
+	}
+
+	/**
+	 * Completes the subscriber once it has received the events already buffered.
+	 */
+	void complete() {
+		synchronized (this) {
+			completed = true;
+		}
+		drain();
+	}
+
+	@Override
+	public void request(long n) {
+		if (n <= 0) {
+			synchronized (this) {
+				buffer.clear();
+				error = new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+			}
+			onTerminate.accept(this);
+		} else {
+			synchronized (this) {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void cancel() {
+		synchronized (this) {
+			if (terminated) {
+				return;
+			}
+			terminated = true;
+			buffer.clear();
+		}
+		onTerminate.accept(this);
+	}
+
+	private void drain() {
+		synchronized (this) {
+			if (emitting) {
+				return;
+			}
+			emitting = true;
+		}
+		for (;;) {
+			T next = null;
+			Throwable failure = null;
+			synchronized (this) {
+				if (terminated) {
+					emitting = false;
+					return;
+				}
+				if (error != null) {
+					failure = error;
+					terminated = true;
+				} else if (!buffer.isEmpty() && demand > 0) {
+					next = buffer.poll();
+					demand--;
+				} else if (completed && buffer.isEmpty()) {
+					terminated = true;
+				} else {
+					emitting = false;
+					return;
+				}
+			}
+			if (next != null) {
+				subscriber.onNext(next);
+			} else if (failure != null) {
+				subscriber.onError(failure);
+			} else {
+				subscriber.onComplete();
+			}
+		}
+	}
+}
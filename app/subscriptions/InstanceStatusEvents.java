@@ -0,0 +1,85 @@
+package subscriptions;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import entity.ProductInstance;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.GraphQLMetrics;
+import org.reactivestreams.Publisher;
+import play.Configuration;
+
+/**
+ * Status changes of product instances, fanned out to the {@code instanceStatusChanged} subscriptions.
+ * <p>
+ * Each product id with at least one subscriber has a single {@link Topic} that all of its
+ * subscribers share, so an event is published once per product whatever the number of subscribers.
+ * A topic is created by its first subscriber and removed with its last one. Every subscriber buffers
+ * up to {@code graphql.subscriptions.bufferSize} events it has not requested yet and is dropped when
+ * it falls further behind.
+ */
+@Singleton
+public class InstanceStatusEvents {
+
+	private final int bufferSize;
+	private final ConcurrentMap<Long, Topic<ProductInstance>> topics = new ConcurrentHashMap<>();
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	@Inject
+	public InstanceStatusEvents(Configuration configuration, GraphQLMetrics metrics) {
+		this.bufferSize = configuration.getInt("graphql.subscriptions.bufferSize", 64);
+
+		metrics.gauge("graphql_subscription_topics", "Product ids with at least one status subscriber.",
+				topics::size);
+		metrics.gauge("graphql_subscription_subscribers", "Subscribers of instance status changes.",
+				() -> topics.values().stream().mapToInt(Topic::size).sum());
+		metrics.gauge("graphql_subscription_events_published", "Instance status changes published.",
+				published::sum);
+		metrics.gauge("graphql_subscription_slow_consumers_dropped", "Subscribers dropped for falling behind.",
+				dropped::sum);
+	}
+
+	/**
+	 * @return a publisher of the status changes of the product's instance from the time of subscription
+	 */
+	public Publisher<ProductInstance> instanceStatusChanged(Long productId) {
+		return subscriber -> {
+			BufferedSubscription<ProductInstance> subscription = new BufferedSubscription<>(subscriber, bufferSize,
+					ended -> unsubscribe(productId, ended));
+			subscriber.onSubscribe(subscription);
+			topics.compute(productId, (key, topic) -> {
+				if (subscription.isTerminated()) {
+					return topic;
+				}
+				Topic<ProductInstance> shared = topic != null ? topic : new Topic<>();
+				shared.add(subscription);
+				return shared;
+			});
+		};
+	}
+
+	private void unsubscribe(Long productId, BufferedSubscription<ProductInstance> subscription) {
+		topics.computeIfPresent(productId, (key, topic) -> {
+			topic.remove(subscription);
+			return topic.isEmpty() ? null : topic;
+		});
+	}
+
+	/**
+	 * Publishes a status change to the current subscribers of the instance's product. Returns
+	 * immediately; nobody subscribed means nothing to do.
+	 */
+	public void publish(ProductInstance instance) {
+		published.increment();
+		Topic<ProductInstance> topic = topics.get(instance.productId);
+		if (topic != null) {
+			dropped.add(topic.publish(instance));
+		}
+	}
+
+	int getTopicCount() {
+		return topics.size();
+	}
+}
@@ -0,0 +1,17 @@
+package subscriptions;
+
+import exception.CatalogException;
+
+/**
+ * Ends a subscription whose subscriber fell a whole buffer behind its topic.
+ */
+public class SlowConsumerException extends CatalogException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CODE = "SLOW_CONSUMER";
+
+	public SlowConsumerException(int bufferSize) {
+		super(CODE, "Subscriber fell " + bufferSize + " events behind and was dropped");
+	}
+}
@@ -0,0 +1,42 @@
+package subscriptions;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The event stream of one key, shared by all of its subscribers. Publishing walks the current
+ * subscribers once and never waits for any of them.
+ */
+final class Topic<T> {
+
+	private final Set<BufferedSubscription<T>> subscriptions = ConcurrentHashMap.newKeySet();
+
+	void add(BufferedSubscription<T> subscription) {
+		subscriptions.add(subscription);
+	}
+
+	void remove(BufferedSubscription<T> subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	boolean isEmpty() {
+		return subscriptions.isEmpty();
+	}
+
+	int size() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * @return the number of subscribers dropped because they were too far behind
+	 */
+	int publish(T event) {
+		int dropped = 0;
+		for (BufferedSubscription<T> subscription : subscriptions) {
+			if (!subscription.offer(event)) {
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+}
@@ -0,0 +1,16 @@
+#!/bin/sh
+# Runs the JMH benchmarks with the GC profiler and keeps the results as
+# benchmarks/results/<name>.json and <name>.txt.
+#
+# Usage: benchmarks/run.sh [name] [JMH options]
+#   benchmarks/run.sh baseline               full run on the main branch, to commit as the new baseline
+#   benchmarks/run.sh current ExecutionBenchmark -p depth=2
+set -e
+cd "$(dirname "$0")/.."
+
+name=${1:-current}
+[ $# -gt 0 ] && shift
+
+mkdir -p benchmarks/results
+sbt "benchmarks/jmh:run -prof gc -rf json -rff $(pwd)/benchmarks/results/$name.json $*" \
+	| tee "benchmarks/results/$name.txt"
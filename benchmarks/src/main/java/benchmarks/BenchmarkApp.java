@@ -0,0 +1,43 @@
+package benchmarks;
+
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+
+/**
+ * The application as the benchmarks see it: every cache in front of execution is off, so each
+ * invocation does the full work, and the query limits are raised for the deepest queries.
+ */
+public final class BenchmarkApp {
+
+	private BenchmarkApp() {
+	}
+
+	public static Application start() {
+		return start(builder());
+	}
+
+	/**
+	 * Starts the application built by the given builder, which may configure or override more.
+	 */
+	public static Application start(GuiceApplicationBuilder builder) {
+		Application app = builder.build();
+		play.api.Play.start(app.getWrappedApplication());
+		return app;
+	}
+
+	public static GuiceApplicationBuilder builder() {
+		return new GuiceApplicationBuilder()
+				.configure("graphql.schema.watch", false)
+				.configure("graphql.responseCache.enabled", false)
+				.configure("graphql.resolverCache.defaultTtl", "0")
+				.configure("graphql.resolverCache.ttl.Product", "0")
+				.configure("graphql.resolverCache.ttl.ProductDetail", "0")
+				.configure("graphql.resolverCache.ttl.ProductInstance", "0")
+				.configure("graphql.resolverCache.ttl.ProductRelated", "0")
+				.configure("graphql.limits.maxComplexity", Integer.MAX_VALUE);
+	}
+
+	public static void stop(Application app) {
+		play.api.Play.stop(app.getWrappedApplication());
+	}
+}
@@ -0,0 +1,23 @@
+package benchmarks;
+
+/**
+ * Representative {@code productById} queries.
+ */
+public final class Queries {
+
+	private static final String LEAF = "id name categoryName description details { id name description display }";
+
+	private Queries() {
+	}
+
+	/**
+	 * @param depth levels of {@code related} below the product, each selecting details again
+	 */
+	public static String productById(int depth) {
+		StringBuilder selection = new StringBuilder(LEAF);
+		for (int i = 0; i < depth; i++) {
+			selection = new StringBuilder(LEAF).append(" related { ").append(selection).append(" }");
+		}
+		return "query ProductPage { productById(id: \"1\") { " + selection + " } }";
+	}
+}
@@ -0,0 +1,71 @@
+package controllers;
+
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import controllers.GraphQLController.GraphQLBatch;
+import controllers.GraphQLController.GraphQLRequest;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import play.libs.Json;
+
+/**
+ * Binding a POST body with {@link #filters} variables: {@link GraphQLBodyParser#read} on the raw bytes,
+ * against the former JsonNode tree plus {@code readValue(tree.traverse())} path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String QUERY = "query Products($ids: [ID!]) { productById(id: \"1\") { id name details { id name } } }";
+
+	@Param({ "0", "100", "2000" })
+	public int filters;
+
+	private ByteString body;
+
+	@Setup
+	public void setUp() {
+		ObjectNode json = Json.newObject();
+		json.put("query", QUERY);
+		json.put("operationName", "Products");
+		ArrayNode list = json.putObject("variables").putArray("filters");
+		for (int i = 0; i < filters; i++) {
+			list.addObject()
+					.put("id", String.valueOf(i))
+					.put("categoryName", "The Category Name " + i)
+					.put("provisionAllowed", i % 2 == 0)
+					.putArray("tags").add("catalog").add("offering").add(i);
+		}
+		body = ByteString.fromString(Json.stringify(json));
+	}
+
+	@Benchmark
+	public GraphQLBatch streaming() throws IOException {
+		return GraphQLBodyParser.read("application/json", body);
+	}
+
+	@Benchmark
+	public GraphQLRequest tree() throws IOException {
+		JsonNode tree = Json.parse(body.iterator().asInputStream());
+		return MAPPER.readValue(tree.traverse(), GraphQLRequest.class);
+	}
+}
@@ -0,0 +1,77 @@
+package controllers;
+
+import akka.util.ByteString;
+import benchmarks.BenchmarkApp;
+import benchmarks.Queries;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import play.Application;
+import schema.GraphQLEngine;
+import schema.GraphQLProvider;
+
+/**
+ * Building the response map of an execution result and writing it as JSON, as the controller does for
+ * every response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Param({ "0", "1", "2", "3" })
+	public int depth;
+
+	private Application app;
+	private GraphQLController controller;
+	private GraphQLEngine engine;
+	private ExecutionResult result;
+
+	@Setup
+	public void setUp() {
+		app = BenchmarkApp.start();
+		GraphQLProvider provider = app.injector().instanceOf(GraphQLProvider.class);
+		controller = app.injector().instanceOf(GraphQLController.class);
+		engine = provider.current();
+		result = engine.getGraphQL().execute(ExecutionInput.newExecutionInput()
+				.query(Queries.productById(depth))
+				.dataLoaderRegistry(provider.newDataLoaderRegistry())
+				.build());
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApp.stop(app);
+	}
+
+	@Benchmark
+	public ByteString serialize() throws IOException {
+		return GraphQLController.writeJson(controller.createResultFromDataAndErrors(result, engine));
+	}
+
+	/** The former path, {@code ok(MAPPER.writeValueAsString(result))}: a String, then its bytes. */
+	@Benchmark
+	public ByteString serializeViaString() throws IOException {
+		return ByteString.fromString(MAPPER.writeValueAsString(controller.createResultFromDataAndErrors(result, engine)),
+				"UTF-8");
+	}
+}
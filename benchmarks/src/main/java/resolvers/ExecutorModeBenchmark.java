@@ -0,0 +1,105 @@
+package resolvers;
+
+import static play.inject.Bindings.bind;
+
+import benchmarks.BenchmarkApp;
+import entity.Product;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import play.Application;
+import schema.GraphQLProvider;
+
+/**
+ * {@value #CONCURRENT_QUERIES} concurrent queries whose resolvers block on a stub backend with
+ * {@value #BACKEND_LATENCY_MILLIS} ms of latency per call, on the resolver executor in each
+ * {@link #mode}. A platform pool of {@value #PLATFORM_THREADS} threads cannot do better than
+ * {@code CONCURRENT_QUERIES / PLATFORM_THREADS * BACKEND_LATENCY_MILLIS} ms; on a runtime without
+ * virtual threads the virtual mode measures the platform fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorModeBenchmark {
+
+	private static final int BACKEND_LATENCY_MILLIS = 20;
+	private static final int CONCURRENT_QUERIES = 1000;
+	private static final int PLATFORM_THREADS = 32;
+
+	@Param({ ResolverExecutor.MODE_PLATFORM, ResolverExecutor.MODE_VIRTUAL })
+	public String mode;
+
+	private Application app;
+	private GraphQLProvider provider;
+
+	@Setup
+	public void setUp() {
+		app = BenchmarkApp.start(BenchmarkApp.builder()
+				.configure("graphql.executor.mode", mode)
+				.configure("graphql.executor.threads", PLATFORM_THREADS)
+				.configure("graphql.executor.queueSize", CONCURRENT_QUERIES)
+				// queued calls of the platform pool would otherwise time out
+				.configure("graphql.resilience.timeouts.Query.productById", "60s")
+				.overrides(bind(ProductDataFetcher.class).to(StubBackendProductDataFetcher.class)));
+		provider = app.injector().instanceOf(GraphQLProvider.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApp.stop(app);
+	}
+
+	@Benchmark
+	public List<ExecutionResult> concurrentQueries() {
+		List<CompletableFuture<ExecutionResult>> results = new ArrayList<>(CONCURRENT_QUERIES);
+		for (int i = 1; i <= CONCURRENT_QUERIES; i++) {
+			results.add(provider.graphQL().executeAsync(ExecutionInput.newExecutionInput()
+					.query("{ productById(id: \"" + i + "\") { id name } }")
+					.dataLoaderRegistry(provider.newDataLoaderRegistry())
+					.build()));
+		}
+		List<ExecutionResult> done = new ArrayList<>(CONCURRENT_QUERIES);
+		for (CompletableFuture<ExecutionResult> result : results) {
+			ExecutionResult executed = result.join();
+			if (!executed.getErrors().isEmpty()) {
+				throw new IllegalStateException("Benchmark query failed: " + executed.getErrors());
+			}
+			done.add(executed);
+		}
+		return done;
+	}
+
+	/**
+	 * Blocks the calling thread for the backend latency, like a JDBC or HTTP client would.
+	 */
+	static class StubBackendProductDataFetcher extends ProductDataFetcher {
+
+		@Override
+		protected Product getProduct(Long id) {
+			try {
+				Thread.sleep(BACKEND_LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getProduct(id);
+		}
+	}
+}
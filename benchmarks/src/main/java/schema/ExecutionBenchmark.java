@@ -0,0 +1,75 @@
+package schema;
+
+import benchmarks.BenchmarkApp;
+import benchmarks.Queries;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import play.Application;
+
+/**
+ * Execution of {@code productById} with {@code related} nested {@link #depth} levels deep, through the
+ * shared engine: document cache, instrumentation chain, data loaders and the resolver executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionBenchmark {
+
+	@Param({ "0", "1", "2", "3" })
+	public int depth;
+
+	private Application app;
+	private GraphQLProvider provider;
+	private String query;
+
+	@Setup
+	public void setUp() {
+		app = BenchmarkApp.start();
+		provider = app.injector().instanceOf(GraphQLProvider.class);
+		query = Queries.productById(depth);
+		ExecutionResult result = execute();
+		if (!result.getErrors().isEmpty()) {
+			throw new IllegalStateException("Benchmark query failed: " + result.getErrors());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApp.stop(app);
+	}
+
+	@Benchmark
+	public ExecutionResult execute() {
+		return provider.graphQL().execute(ExecutionInput.newExecutionInput()
+				.query(query)
+				.dataLoaderRegistry(provider.newDataLoaderRegistry())
+				.build());
+	}
+
+	/** The former request path: a schema and engine built for every request, then execution. */
+	@Benchmark
+	public ExecutionResult executeWithPerRequestSchema() throws Exception {
+		GraphQL graphQL = provider.newGraphQL(provider.buildSchema(), new DocumentCache(1), false);
+		return graphQL.execute(ExecutionInput.newExecutionInput()
+				.query(query)
+				.dataLoaderRegistry(provider.newDataLoaderRegistry())
+				.build());
+	}
+}
@@ -0,0 +1,75 @@
+package schema;
+
+import benchmarks.BenchmarkApp;
+import benchmarks.Queries;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import graphql.validation.Validator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import play.Application;
+
+/**
+ * Schema build at startup and the per request parse and validate phases a document cache miss pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaBenchmark {
+
+	@Param({ "0", "1", "2", "3" })
+	public int depth;
+
+	private Application app;
+	private GraphQLProvider provider;
+	private GraphQLSchema schema;
+	private String query;
+	private Document document;
+
+	@Setup
+	public void setUp() throws Exception {
+		app = BenchmarkApp.start();
+		provider = app.injector().instanceOf(GraphQLProvider.class);
+		schema = provider.buildSchema();
+		query = Queries.productById(depth);
+		document = new Parser().parseDocument(query);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApp.stop(app);
+	}
+
+	/** Reads the SDL, builds the wiring and generates the executable schema. */
+	@Benchmark
+	public GraphQLSchema buildSchema() throws Exception {
+		return provider.buildSchema();
+	}
+
+	@Benchmark
+	public Document parse() {
+		return new Parser().parseDocument(query);
+	}
+
+	@Benchmark
+	public List<ValidationError> validate() {
+		return new Validator().validateDocument(schema, document);
+	}
+}
@@ -0,0 +1,216 @@
+package loadtest;
+
+import static play.inject.Bindings.bind;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.LatencyHistogram;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.ws.WS;
+import play.libs.ws.WSClient;
+import play.test.Helpers;
+import play.test.TestServer;
+import repository.CatalogRepository;
+
+/**
+ * Open loop HTTP load test of {@code POST /graphql}.
+ * <p>
+ * Starts the application in process on a synthetic catalog and sends the {@link Workload} at a fixed
+ * arrival rate, whether or not earlier requests have completed. Latency is measured from the time a
+ * request was due to be sent, so a stalled server shows up in the percentiles instead of slowing the
+ * load down. Runs offline on a single machine:
+ *
+ * <pre>
+ * sbt "loadtest/run --rate 500 --duration 60 --products 10000 --fanout 3 --latency 5"
+ * </pre>
+ *
+ * Other options: {@code --warmup} seconds, {@code --seed}, {@code --port}, and
+ * {@code --config key=value} for any application setting, repeatable.
+ */
+public class LoadTest {
+
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] PERCENTILE_LABELS = { "p50", "p90", "p99", "p99.9" };
+
+	public static void main(String[] args) throws Exception {
+		Options options = new Options(args);
+		int rate = options.getInt("rate", 200);
+		int duration = options.getInt("duration", 30);
+		int warmup = options.getInt("warmup", 10);
+		int products = options.getInt("products", 10000);
+		int fanout = options.getInt("fanout", 3);
+		long latency = options.getInt("latency", 5);
+		long seed = options.getInt("seed", 42);
+		int port = options.getInt("port", 19001);
+
+		System.out.println("Catalog of " + products + " products, fan-out " + fanout + ", backend latency " + latency
+				+ " ms; " + rate + " requests/s for " + duration + " s after " + warmup + " s of warmup");
+
+		Application app = new GuiceApplicationBuilder()
+				.configure("graphql.schema.watch", false)
+				// all the load comes from one address, which a per client budget would throttle
+				.configure("graphql.admission.enabled", false)
+				.configure(options.getConfig())
+				.overrides(bind(CatalogRepository.class)
+						.toInstance(new SyntheticCatalogRepository(products, fanout, latency)))
+				.build();
+		TestServer server = Helpers.testServer(port, app);
+		server.start();
+		WSClient ws = WS.newClient(port);
+		try {
+			if (warmup > 0) {
+				new LoadTest(ws, new Workload(seed + 1, products)).run(rate, warmup);
+			}
+			Report report = new LoadTest(ws, new Workload(seed, products)).run(rate, duration);
+			System.out.print(report);
+		} finally {
+			ws.close();
+			server.stop();
+		}
+	}
+
+	private final WSClient ws;
+	private final Workload workload;
+	private final LatencyHistogram all = new LatencyHistogram();
+	private final ConcurrentMap<String, LatencyHistogram> byOperation = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+	private final LongAdder graphQLErrors = new LongAdder();
+
+	public LoadTest(WSClient ws, Workload workload) {
+		this.ws = ws;
+		this.workload = workload;
+		for (String name : Workload.operationNames()) {
+			byOperation.put(name, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * Sends {@code rate} requests per second for {@code seconds}, then waits up to 30 seconds for the
+	 * requests still in flight.
+	 */
+	public Report run(int rate, int seconds) throws InterruptedException {
+		long total = (long) rate * seconds;
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		CountDownLatch completed = new CountDownLatch((int) total);
+		AtomicLong sent = new AtomicLong();
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		long start = System.nanoTime();
+
+		scheduler.scheduleAtFixedRate(() -> {
+			long n = sent.getAndIncrement();
+			if (n >= total) {
+				return;
+			}
+			long due = start + n * intervalNanos;
+			Workload.Operation operation = workload.next();
+			ws.url("/graphql").setContentType("application/json").post(operation.getBody())
+					.whenComplete((response, e) -> {
+						int status = e != null ? -1 : response.getStatus();
+						boolean failed = status != 200 || response.getBody().contains("\"errors\"");
+						if (status == 200 && failed) {
+							graphQLErrors.increment();
+						}
+						long nanos = System.nanoTime() - due;
+						all.record(nanos, failed);
+						byOperation.get(operation.getName()).record(nanos, failed);
+						statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+						completed.countDown();
+					});
+		}, 0, intervalNanos, TimeUnit.NANOSECONDS);
+
+		boolean drained = completed.await(seconds + 30L, TimeUnit.SECONDS);
+		long elapsed = System.nanoTime() - start;
+		scheduler.shutdownNow();
+		return new Report(rate, total, elapsed, drained);
+	}
+
+	/**
+	 * Throughput, error rates and latency percentiles of one run.
+	 */
+	public class Report {
+		private final int rate;
+		private final long sent;
+		private final long elapsedNanos;
+		private final boolean drained;
+
+		Report(int rate, long sent, long elapsedNanos, boolean drained) {
+			this.rate = rate;
+			this.sent = sent;
+			this.elapsedNanos = elapsedNanos;
+			this.drained = drained;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder out = new StringBuilder();
+			double seconds = elapsedNanos / 1e9;
+			out.append(String.format("%nTarget rate      %d req/s%n", rate));
+			out.append(String.format("Completed        %d of %d in %.1f s%s%n", all.getCount(), sent, seconds,
+					drained ? "" : " (timed out waiting for the rest)"));
+			out.append(String.format("Throughput       %.1f req/s%n", all.getCount() / seconds));
+			out.append(String.format("Error rate       %.3f %% (%d with GraphQL errors)%n",
+					all.getCount() == 0 ? 0 : 100.0 * all.getErrorCount() / all.getCount(), graphQLErrors.sum()));
+			Map<Integer, Long> byStatus = new HashMap<>();
+			statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+			out.append(String.format("Status codes     %s%n", byStatus));
+			out.append(String.format("%n%-16s %8s", "Latency (ms)", "count"));
+			for (String label : PERCENTILE_LABELS) {
+				out.append(String.format(" %9s", label));
+			}
+			out.append(String.format("%n"));
+			Map<String, LatencyHistogram> rows = new LinkedHashMap<>();
+			rows.put("all", all);
+			rows.putAll(byOperation);
+			rows.forEach((name, histogram) -> {
+				out.append(String.format("%-16s %8d", name, histogram.getCount()));
+				for (double percentile : PERCENTILES) {
+					out.append(String.format(" %9.2f", histogram.getQuantileSeconds(percentile) * 1000));
+				}
+				out.append(String.format("%n"));
+			});
+			return out.toString();
+		}
+	}
+
+	/**
+	 * {@code --name value} command line options.
+	 */
+	static final class Options {
+		private final Map<String, String> values = new HashMap<>();
+		private final Map<String, Object> config = new HashMap<>();
+
+		Options(String[] args) {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				if (!args[i].startsWith("--")) {
+					throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+				}
+				String name = args[i].substring(2);
+				if (name.equals("config")) {
+					String[] setting = args[i + 1].split("=", 2);
+					config.put(setting[0], setting.length > 1 ? setting[1] : "");
+				} else {
+					values.put(name, args[i + 1]);
+				}
+			}
+		}
+
+		int getInt(String name, int defaultValue) {
+			String value = values.get(name);
+			return value == null ? defaultValue : Integer.parseInt(value);
+		}
+
+		Map<String, Object> getConfig() {
+			return config;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import entity.ProductInstance;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.GraphQLMetrics;
+import metrics.LatencyHistogram;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.test.Helpers;
+import play.test.TestServer;
+import subscriptions.InstanceStatusEvents;
+
+/**
+ * Soak test of {@code instanceStatusChanged} subscriptions over WebSocket.
+ * <p>
+ * Starts the application in process, opens thousands of graphql-ws connections from local Netty
+ * clients spread over the products, then publishes status changes at a fixed rate and measures how
+ * long each takes to reach the clients. A share of the clients stop reading their socket after
+ * subscribing; they should be closed by the server without slowing down the others:
+ *
+ * <pre>
+ * sbt "loadtest/runMain loadtest.SubscriptionSoakTest --clients 5000 --products 100 --rate 2000 --duration 120"
+ * </pre>
+ *
+ * Other options: {@code --slow} percent of clients that stop reading, {@code --port}, and
+ * {@code --config key=value} for any application setting, repeatable.
+ */
+public class SubscriptionSoakTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] PERCENTILE_LABELS = { "p50", "p90", "p99", "p99.9" };
+	private static final String[] GAUGES = { "graphql_subscription_connections", "graphql_subscription_topics",
+			"graphql_subscription_subscribers", "graphql_subscription_slow_consumers_dropped",
+			"graphql_subscription_slow_connections_closed" };
+
+	public static void main(String[] args) throws Exception {
+		LoadTest.Options options = new LoadTest.Options(args);
+		int clients = options.getInt("clients", 5000);
+		int products = options.getInt("products", 100);
+		int rate = options.getInt("rate", 1000);
+		int duration = options.getInt("duration", 60);
+		int slowPercent = options.getInt("slow", 1);
+		int port = options.getInt("port", 19002);
+
+		System.out.println(clients + " clients over " + products + " products, " + slowPercent
+				+ " % of them not reading; " + rate + " status changes/s for " + duration + " s");
+
+		Application app = new GuiceApplicationBuilder()
+				.configure("graphql.schema.watch", false)
+				.configure(options.getConfig())
+				.build();
+		TestServer server = Helpers.testServer(port, app);
+		server.start();
+		EventLoopGroup group = new NioEventLoopGroup();
+		try {
+			SubscriptionSoakTest test = new SubscriptionSoakTest(app.injector().instanceOf(InstanceStatusEvents.class),
+					app.injector().instanceOf(GraphQLMetrics.class));
+			test.connect(group, URI.create("ws://localhost:" + port + "/graphql/subscriptions"), clients, products,
+					slowPercent);
+			test.run(products, rate, duration);
+			System.out.print(test.report(rate, duration));
+		} finally {
+			group.shutdownGracefully();
+			server.stop();
+		}
+	}
+
+	private final InstanceStatusEvents events;
+	private final GraphQLMetrics metrics;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder disconnected = new LongAdder();
+	private final LongAdder slowDisconnected = new LongAdder();
+	private final AtomicLong published = new AtomicLong();
+	/** Readers subscribed to each product, i.e. deliveries expected per event. */
+	private int[] readers;
+	private int slowClients;
+
+	public SubscriptionSoakTest(InstanceStatusEvents events, GraphQLMetrics metrics) {
+		this.events = events;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Opens the connections, subscribes client i to product {@code i % products + 1} and waits until
+	 * the server has registered every subscription.
+	 */
+	void connect(EventLoopGroup group, URI uri, int clients, int products, int slowPercent) throws Exception {
+		readers = new int[products + 1];
+		List<Channel> channels = new ArrayList<>(clients);
+		for (int i = 0; i < clients; i++) {
+			long productId = i % products + 1;
+			boolean slow = i % 100 < slowPercent;
+			if (slow) {
+				slowClients++;
+			} else {
+				readers[(int) productId]++;
+			}
+			Client client = new Client(WebSocketClientHandshakerFactory.newHandshaker(uri, WebSocketVersion.V13,
+					"graphql-ws", false, new DefaultHttpHeaders()), productId, slow);
+			channels.add(new Bootstrap().group(group).channel(NioSocketChannel.class)
+					.handler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel channel) {
+							channel.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(65536), client);
+						}
+					}).connect(uri.getHost(), uri.getPort()).sync().channel());
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (gauge("graphql_subscription_subscribers") < clients && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		System.out.println((long) gauge("graphql_subscription_subscribers") + " of " + channels.size()
+				+ " subscriptions registered");
+	}
+
+	/**
+	 * Publishes {@code rate} status changes per second, round robin over the products, then waits a
+	 * few seconds for the last deliveries.
+	 */
+	void run(int products, int rate, int seconds) throws InterruptedException {
+		long total = (long) rate * seconds;
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		scheduler.scheduleAtFixedRate(() -> {
+			long n = published.get();
+			if (n >= total) {
+				return;
+			}
+			ProductInstance instance = new ProductInstance();
+			instance.productId = n % products + 1;
+			instance.id = instance.productId;
+			// the clients run in this process, so the status can carry the publish time
+			instance.status = String.valueOf(System.nanoTime());
+			events.publish(instance);
+			published.incrementAndGet();
+		}, 0, intervalNanos, TimeUnit.NANOSECONDS);
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		scheduler.shutdownNow();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+	}
+
+	String report(int rate, int seconds) {
+		long expected = 0;
+		int products = readers.length - 1;
+		for (long n = 0; n < published.get(); n++) {
+			expected += readers[(int) (n % products + 1)];
+		}
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%nPublished        %d status changes (%d/s target, %d s)%n", published.get(), rate,
+				seconds));
+		out.append(String.format("Delivered        %d of %d to reading clients (%.3f %%)%n", received.sum(), expected,
+				expected == 0 ? 0 : 100.0 * received.sum() / expected));
+		out.append(String.format("Error messages   %d%n", errors.sum()));
+		out.append(String.format("Disconnected     %d reading, %d of %d not reading%n",
+				disconnected.sum() - slowDisconnected.sum(), slowDisconnected.sum(), slowClients));
+		out.append(String.format("%n%-16s %8s", "Delivery (ms)", "count"));
+		for (String label : PERCENTILE_LABELS) {
+			out.append(String.format(" %9s", label));
+		}
+		out.append(String.format("%n%-16s %8d", "all", latency.getCount()));
+		for (double percentile : PERCENTILES) {
+			out.append(String.format(" %9.2f", latency.getQuantileSeconds(percentile) * 1000));
+		}
+		out.append(String.format("%n%n"));
+		for (String gauge : GAUGES) {
+			out.append(String.format("%-46s %.0f%n", gauge, gauge(gauge)));
+		}
+		return out.toString();
+	}
+
+	private double gauge(String name) {
+		for (String line : metrics.toPrometheus().split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return Double.parseDouble(line.substring(name.length() + 1));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * One graphql-ws client holding a single subscription.
+	 */
+	private final class Client extends SimpleChannelInboundHandler<Object> {
+		private final WebSocketClientHandshaker handshaker;
+		private final long productId;
+		private final boolean slow;
+
+		Client(WebSocketClientHandshaker handshaker, long productId, boolean slow) {
+			this.handshaker = handshaker;
+			this.productId = productId;
+			this.slow = slow;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) {
+			handshaker.handshake(ctx.channel());
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) {
+			disconnected.increment();
+			if (slow) {
+				slowDisconnected.increment();
+			}
+		}
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, Object message) throws IOException {
+			if (!handshaker.isHandshakeComplete()) {
+				handshaker.finishHandshake(ctx.channel(), (FullHttpResponse) message);
+				ctx.write(new TextWebSocketFrame("{\"type\":\"connection_init\",\"payload\":{}}"));
+				ctx.writeAndFlush(new TextWebSocketFrame("{\"type\":\"start\",\"id\":\"1\",\"payload\":{\"query\":"
+						+ "\"subscription { instanceStatusChanged(productId: \\\"" + productId + "\\\") { id status } }\"}}"));
+				if (slow) {
+					// leave everything the server sends in the socket buffers
+					ctx.channel().config().setAutoRead(false);
+				}
+				return;
+			}
+			if (message instanceof CloseWebSocketFrame) {
+				ctx.close();
+				return;
+			}
+			if (!(message instanceof TextWebSocketFrame)) {
+				return;
+			}
+			JsonNode json = MAPPER.readTree(((TextWebSocketFrame) message).text());
+			String type = json.path("type").asText();
+			if ("data".equals(type)) {
+				String status = json.path("payload").path("data").path("instanceStatusChanged").path("status").asText();
+				latency.record(System.nanoTime() - Long.parseLong(status), false);
+				received.increment();
+			} else if ("error".equals(type) || "connection_error".equals(type)) {
+				errors.increment();
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			ctx.close();
+		}
+	}
+}
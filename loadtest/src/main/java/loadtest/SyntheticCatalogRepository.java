@@ -0,0 +1,212 @@
+package loadtest;
+
+import entity.Product;
+import entity.ProductDetail;
+import entity.ProductInstance;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import repository.CatalogRepository;
+import repository.ProductUpdate;
+
+/**
+ * Generated catalog of {@code products} offerings, each with {@code fanout} related offerings, answering
+ * every call after {@code latencyMillis}. It stands in for the {@link CatalogRepository} the application
+ * binds, so every resolver path runs as in production against a catalog of any size.
+ * <p>
+ * The dataset is a pure function of the parameters, so two runs with the same parameters see the
+ * same catalog whatever branch they run on. It is read only.
+ */
+public class SyntheticCatalogRepository implements CatalogRepository {
+
+	private static final int DETAILS_PER_PRODUCT = 2;
+	private static final long REQUEST_ID_OFFSET = 1000;
+
+	private final int products;
+	private final int fanout;
+	private final long latencyMillis;
+
+	public SyntheticCatalogRepository(int products, int fanout, long latencyMillis) {
+		this.products = products;
+		this.fanout = fanout;
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public List<Product> findProducts(List<Long> ids) {
+		backendLatency();
+		List<Product> result = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			result.add(exists(id) ? product(id) : null);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Collection<ProductDetail>> findDetailsByProductIds(List<Long> productIds) {
+		backendLatency();
+		List<Collection<ProductDetail>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(details(id));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Collection<Product>> findRelatedByProductIds(List<Long> productIds) {
+		backendLatency();
+		List<Collection<Product>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(related(id));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Collection<Long>> findRelatingProductIds(List<Long> productIds) {
+		// only the write path looks relating products up
+		throw new UnsupportedOperationException("The synthetic catalog is read only");
+	}
+
+	@Override
+	public List<List<ProductDetail>> findDetailPages(List<Long> productIds, int offset, int limit) {
+		backendLatency();
+		List<List<ProductDetail>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(page(details(id), offset, limit));
+		}
+		return result;
+	}
+
+	@Override
+	public List<List<Product>> findRelatedPages(List<Long> productIds, int offset, int limit) {
+		backendLatency();
+		List<List<Product>> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(page(related(id), offset, limit));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Integer> countDetails(List<Long> productIds) {
+		backendLatency();
+		List<Integer> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(exists(id) ? DETAILS_PER_PRODUCT : 0);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Integer> countRelated(List<Long> productIds) {
+		backendLatency();
+		List<Integer> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(exists(id) ? fanout : 0);
+		}
+		return result;
+	}
+
+	@Override
+	public List<ProductInstance> findInstancesByProductIds(List<Long> productIds) {
+		backendLatency();
+		List<ProductInstance> result = new ArrayList<>(productIds.size());
+		for (Long id : productIds) {
+			result.add(exists(id) ? instance(id) : null);
+		}
+		return result;
+	}
+
+	@Override
+	public List<ProductInstance> findInstancesByRequestIds(List<Long> requestIds) {
+		backendLatency();
+		List<ProductInstance> result = new ArrayList<>(requestIds.size());
+		for (Long requestId : requestIds) {
+			long id = requestId - REQUEST_ID_OFFSET;
+			result.add(exists(id) ? instance(id) : null);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Product> updateProducts(List<ProductUpdate> updates) {
+		throw new UnsupportedOperationException("The synthetic catalog is read only");
+	}
+
+	private boolean exists(long id) {
+		return id >= 1 && id <= products;
+	}
+
+	private Product product(long id) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName("Product " + id);
+		product.setCategoryName("Category " + id % 20);
+		product.setDescription("Synthetic offering " + id + " of " + products + ".");
+		product.setImage("https://img.example.invalid/" + id + ".png");
+		return product;
+	}
+
+	private List<ProductDetail> details(long id) {
+		List<ProductDetail> details = new ArrayList<>(DETAILS_PER_PRODUCT);
+		if (!exists(id)) {
+			return details;
+		}
+		for (int i = 0; i < DETAILS_PER_PRODUCT; i++) {
+			ProductDetail detail = new ProductDetail();
+			detail.id = id * 10 + i;
+			detail.name = "Detail " + i + " of " + id;
+			detail.description = "Synthetic detail.";
+			detail.display = "display";
+			detail.image = "NA";
+			detail.type = "text";
+			detail.card = i == 0;
+			details.add(detail);
+		}
+		return details;
+	}
+
+	/**
+	 * Related offerings stay inside the catalog, so nested {@code related} fields keep resolving.
+	 */
+	private List<Product> related(long id) {
+		List<Product> related = new ArrayList<>(fanout);
+		if (!exists(id)) {
+			return related;
+		}
+		for (int i = 1; i <= fanout; i++) {
+			related.add(product((id * 31 + i * 17) % products + 1));
+		}
+		return related;
+	}
+
+	private ProductInstance instance(long id) {
+		ProductInstance instance = new ProductInstance();
+		instance.id = id;
+		instance.productId = id;
+		instance.requestId = REQUEST_ID_OFFSET + id;
+		instance.name = "Instance of " + id;
+		instance.status = "ACTIVE";
+		return instance;
+	}
+
+	private static <T> List<T> page(List<T> values, int offset, int limit) {
+		if (offset >= values.size()) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(values.subList(offset, Math.min(values.size(), offset + limit)));
+	}
+
+	private void backendLatency() {
+		if (latencyMillis <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
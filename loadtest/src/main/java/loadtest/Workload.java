@@ -0,0 +1,68 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Random;
+import play.libs.Json;
+
+/**
+ * Mixed query workload over the synthetic catalog. Operations are drawn from a seeded random
+ * sequence, so every run with the same seed sends the same requests in the same order.
+ */
+public class Workload {
+
+	private static final String[] NAMES = { "ProductCard", "ProductDetails", "ProductRelated", "ProductGraph" };
+	private static final String[] QUERIES = {
+			"query ProductCard($id: String!) { productById(id: $id) { id name image } }",
+			"query ProductDetails($id: String!) { productById(id: $id) { id name description details { id name description } } }",
+			"query ProductRelated($id: String!) { productById(id: $id) { id name related { id name details { id name } } } }",
+			"query ProductGraph($id: String!) { productById(id: $id) { id related { id name related { id name details { id } } } } }" };
+	/** Percent of the traffic per query, in the order of {@link #QUERIES}. */
+	private static final int[] WEIGHTS = { 50, 25, 15, 10 };
+
+	private final Random random;
+	private final int products;
+
+	public Workload(long seed, int products) {
+		this.random = new Random(seed);
+		this.products = products;
+	}
+
+	/**
+	 * Not thread safe; the driver draws from a single scheduler thread.
+	 */
+	public Operation next() {
+		int draw = random.nextInt(100);
+		int index = 0;
+		while (draw >= WEIGHTS[index]) {
+			draw -= WEIGHTS[index];
+			index++;
+		}
+		ObjectNode body = Json.newObject();
+		body.put("query", QUERIES[index]);
+		body.put("operationName", NAMES[index]);
+		body.putObject("variables").put("id", String.valueOf(random.nextInt(products) + 1));
+		return new Operation(NAMES[index], body);
+	}
+
+	public static String[] operationNames() {
+		return NAMES.clone();
+	}
+
+	public static final class Operation {
+		private final String name;
+		private final ObjectNode body;
+
+		Operation(String name, ObjectNode body) {
+			this.name = name;
+			this.body = body;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public ObjectNode getBody() {
+			return body;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import admission.ClientBudgets.Charge;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ClientBudgetsTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final ManualTicker ticker = new ManualTicker();
+
+	@Test
+	public void chargesUntilTheBudgetIsSpentThenRefills() {
+		ClientBudgets budgets = new ClientBudgets(100, 10, 10, ticker);
+
+		Charge first = budgets.charge("a", 60);
+		assertTrue(first.isAdmitted());
+		assertEquals(40, first.getRemaining());
+
+		Charge second = budgets.charge("a", 60);
+		assertFalse(second.isAdmitted());
+		assertEquals(40, second.getRemaining());
+		assertEquals(2, second.getRetryAfterSeconds());
+
+		// a rejected charge takes nothing, two seconds refill the missing 20
+		ticker.advance(2 * SECOND);
+		Charge third = budgets.charge("a", 60);
+		assertTrue(third.isAdmitted());
+		assertEquals(0, third.getRemaining());
+	}
+
+	@Test
+	public void clientsHaveBudgetsOfTheirOwn() {
+		ClientBudgets budgets = new ClientBudgets(100, 10, 10, ticker);
+		assertTrue(budgets.charge("a", 100).isAdmitted());
+		assertFalse(budgets.charge("a", 1).isAdmitted());
+		assertTrue(budgets.charge("b", 100).isAdmitted());
+	}
+
+	@Test
+	public void clientsBeyondMaxClientsShareABucketUntilOthersExpire() {
+		ClientBudgets budgets = new ClientBudgets(100, 10, 2, ticker);
+		budgets.charge("a", 10);
+		budgets.charge("b", 100);
+
+		// neither a nor b is full again yet, so c and d share the overflow bucket
+		ticker.advance(5 * SECOND);
+		assertTrue(budgets.charge("c", 60).isAdmitted());
+		assertFalse(budgets.charge("d", 60).isAdmitted());
+		assertFalse(budgets.charge("b", 100).isAdmitted());
+		assertEquals(2, budgets.size());
+
+		// ten seconds refill an empty bucket, after which a has expired and d gets one of its own
+		ticker.advance(6 * SECOND);
+		assertTrue(budgets.charge("d", 100).isAdmitted());
+		assertEquals(2, budgets.size());
+	}
+
+	private static final class ManualTicker extends Ticker {
+		private long nanos;
+
+		void advance(long nanos) {
+			this.nanos += nanos;
+		}
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+public class LowPriorityLaneTest {
+
+	@Test
+	public void queuesBeyondConcurrencyAndShedsBeyondTheQueue() throws Exception {
+		LowPriorityLane lane = new LowPriorityLane(1, 1);
+		CompletableFuture<String> backend = new CompletableFuture<>();
+
+		CompletableFuture<String> running = lane.submit(Runnable::run, () -> backend);
+		CompletableFuture<String> queued = lane.submit(Runnable::run, () -> CompletableFuture.completedFuture("queued"));
+		CompletableFuture<String> shed = lane.submit(Runnable::run, () -> CompletableFuture.completedFuture("shed"));
+
+		assertEquals(1, lane.getRunning());
+		assertEquals(1, lane.getQueued());
+		assertFalse(queued.isDone());
+		try {
+			shed.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		assertEquals(1, lane.getShed());
+
+		backend.complete("running");
+		assertEquals("running", running.get());
+		assertEquals("queued", queued.get());
+		assertEquals(0, lane.getRunning());
+		assertEquals(0, lane.getQueued());
+	}
+}
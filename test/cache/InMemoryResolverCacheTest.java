@@ -0,0 +1,121 @@
+package cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import metrics.GraphQLMetrics;
+import org.junit.Test;
+import play.Configuration;
+
+public class InMemoryResolverCacheTest {
+
+	private final GraphQLMetrics metrics = new GraphQLMetrics();
+	private final InMemoryResolverCache cache = new InMemoryResolverCache(new Configuration(ConfigFactory.parseString(
+			"graphql.resolverCache { maxEntries=100, defaultTtl=0, ttl { Product=1m } }")), metrics);
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void onlyMissingIdsAreLoaded() {
+		assertEquals(Arrays.asList("p1", "p2"), load(Arrays.asList(1L, 2L)).join());
+		assertEquals(Arrays.asList("p2", "p3"), load(Arrays.asList(2L, 3L)).join());
+		assertEquals(2, loads.get());
+		assertTrue(metrics.toPrometheus().contains("graphql_resolver_cache_product_hit_ratio 0.25"));
+	}
+
+	@Test
+	public void argumentsAreTheirOwnEntries() {
+		cache.load("Product", 1L, "details", id -> completed("with details " + loads.incrementAndGet())).join();
+		cache.load("Product", 1L, "", id -> completed("plain " + loads.incrementAndGet())).join();
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void concurrentMissesShareOneLoad() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.load("Product", 1L, "", id -> {
+				loads.incrementAndGet();
+				loading.countDown();
+				await(release);
+				return completed("p" + id);
+			}).join(), executor);
+			assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+			CompletableFuture<String> second = cache.load("Product", 1L, "", id -> completed("p" + id + loads.incrementAndGet()));
+			assertFalse(second.isDone());
+			release.countDown();
+
+			assertEquals("p1", first.get(5, TimeUnit.SECONDS));
+			assertEquals("p1", second.get(5, TimeUnit.SECONDS));
+			assertEquals(1, loads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void invalidatedAndFailedEntriesAreLoadedAgain() {
+		load(Arrays.asList(1L)).join();
+		cache.invalidate("Product", 1L);
+		load(Arrays.asList(1L)).join();
+		assertEquals(2, loads.get());
+
+		CompletableFuture<String> failed = cache.load("Product", 2L, "", id -> {
+			throw new IllegalStateException("backend down");
+		});
+		assertTrue(failed.isCompletedExceptionally());
+		load(Arrays.asList(2L)).join();
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void bulkInvalidationEvictsEveryArgumentOfTheIds() {
+		load(Arrays.asList(1L, 2L, 3L)).join();
+		cache.load("Product", 1L, "related", id -> completed("related " + loads.incrementAndGet())).join();
+		cache.invalidate("Product", new HashSet<>(Arrays.asList(1L, 2L)));
+
+		load(Arrays.asList(1L, 2L, 3L)).join();
+		cache.load("Product", 1L, "related", id -> completed("related " + loads.incrementAndGet())).join();
+		assertEquals(4, loads.get());
+	}
+
+	@Test
+	public void typesWithoutTtlAreNotCached() {
+		cache.load("ProductInstance", 1L, "", id -> completed(loads.incrementAndGet())).join();
+		cache.load("ProductInstance", 1L, "", id -> completed(loads.incrementAndGet())).join();
+		assertEquals(2, loads.get());
+	}
+
+	private CompletableFuture<List<String>> load(List<Long> ids) {
+		return cache.loadMany("Product", ids, "", missing -> {
+			loads.incrementAndGet();
+			return completed(missing.stream().map(id -> "p" + id).collect(Collectors.toList()));
+		});
+	}
+
+	private static <T> CompletableFuture<T> completed(T value) {
+		return CompletableFuture.completedFuture(value);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
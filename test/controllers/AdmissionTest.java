@@ -0,0 +1,82 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class AdmissionTest {
+
+	/** Costs 5 for productById plus 1 per scalar field. */
+	private static final String CHEAP = "{ productById(id: \"%s\") { id name } }";
+	/** Costs 5 for productById, 1 for id and 10 + 5 * 1 for the related list. */
+	private static final String EXPENSIVE = "{ productById(id: \"%s\") { id related { id } } }";
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.admission.budget", 25)
+				.configure("graphql.admission.refillPerSecond", 1)
+				.configure("graphql.admission.expensiveCost", 20)
+				.build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void overBudgetClientGets429WithItsRemainingBudget() {
+		assertEquals(200, post(String.format(CHEAP, 1), null).status());
+		assertEquals(200, post(String.format(CHEAP, 2), null).status());
+		assertEquals(200, post(String.format(CHEAP, 3), null).status());
+
+		Result result = post(String.format(CHEAP, 4), null);
+		assertEquals(429, result.status());
+		assertTrue(result.header("Retry-After").isPresent());
+		JsonNode response = Json.parse(contentAsString(result));
+		assertEquals("RATE_LIMITED", response.path("errors").get(0).path("extensions").path("code").asText());
+		JsonNode budget = response.path("extensions").path("budget");
+		assertEquals(7, budget.path("cost").asInt());
+		assertTrue(budget.path("remaining").asInt() < 7);
+		assertEquals(25, budget.path("capacity").asInt());
+
+		// another API key has a budget of its own
+		assertEquals(200, post(String.format(CHEAP, 4), "other").status());
+	}
+
+	@Test
+	public void expensiveQueryRunsInTheLowPriorityLane() {
+		Result result = post(String.format(EXPENSIVE, 1), "expensive");
+		assertEquals(200, result.status());
+		JsonNode response = Json.parse(contentAsString(result));
+		assertEquals(3, response.path("data").path("productById").path("related").size());
+
+		assertEquals(429, post(String.format(CHEAP, 2), "expensive").status());
+	}
+
+	private Result post(String query, String apiKey) {
+		RequestBuilder request = new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query));
+		if (apiKey != null) {
+			request.header("X-API-Key", apiKey);
+		}
+		return route(app, request);
+	}
+}
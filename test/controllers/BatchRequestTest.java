@@ -0,0 +1,81 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class BatchRequestTest {
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.batch.maxSize", 3)
+				.build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void resultsComeBackInOrderWithPerOperationErrors() {
+		ArrayNode batch = Json.newArray();
+		batch.addObject().put("query", "{ productById(id: \"1\") { id } }");
+		batch.addObject().put("query", "{ productById(id: \"2\") { id ");
+		batch.addObject().put("query", "{ productById(id: \"3\") { id related { id } } }");
+
+		Result result = post(batch);
+		assertEquals(200, result.status());
+
+		JsonNode results = Json.parse(contentAsString(result));
+		assertTrue(results.isArray());
+		assertEquals(3, results.size());
+		assertEquals("1", results.get(0).path("data").path("productById").path("id").asText());
+		assertTrue(results.get(0).path("errors").isMissingNode());
+		assertTrue(results.get(1).path("errors").isArray());
+		assertEquals("3", results.get(2).path("data").path("productById").path("id").asText());
+		assertEquals(3, results.get(2).path("data").path("productById").path("related").size());
+	}
+
+	@Test
+	public void unknownPersistedQueryOnlyFailsItsOperation() {
+		ArrayNode batch = Json.newArray();
+		batch.addObject().putObject("extensions").putObject("persistedQuery").put("sha256Hash", "abc");
+		batch.addObject().put("query", "{ productById(id: \"1\") { id } }");
+
+		JsonNode results = Json.parse(contentAsString(post(batch)));
+		assertEquals("PersistedQueryNotFound", results.get(0).path("errors").get(0).path("message").asText());
+		assertEquals("1", results.get(1).path("data").path("productById").path("id").asText());
+	}
+
+	@Test
+	public void oversizedBatchIsRejected() {
+		ArrayNode batch = Json.newArray();
+		for (int i = 0; i < 4; i++) {
+			batch.addObject().put("query", "{ productById(id: \"" + i + "\") { id } }");
+		}
+		assertEquals(400, post(batch).status());
+	}
+
+	private Result post(JsonNode body) {
+		return route(app, new RequestBuilder().method(POST).uri("/graphql").bodyJson(body));
+	}
+}
@@ -0,0 +1,163 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import akka.stream.Materializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.HeaderNames;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+import resolvers.ProductDataFetcher;
+
+public class DeferTest {
+
+	private static final String DEFERRED =
+			"{ productById(id: \"1\") { id name related @defer { id } instance @defer { status } } }";
+
+	private RecordingProductDataFetcher fetcher;
+	private Application app;
+	private Materializer materializer;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.overrides(bind(ProductDataFetcher.class).to(RecordingProductDataFetcher.class))
+				.build();
+		Helpers.start(app);
+		fetcher = (RecordingProductDataFetcher) app.injector().instanceOf(ProductDataFetcher.class);
+		// multipart responses are chunked
+		materializer = app.injector().instanceOf(Materializer.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void deferredFieldsFollowTheInitialPayload() {
+		Result result = post(DEFERRED, true);
+		assertEquals(200, result.status());
+		assertTrue(result.contentType().get().startsWith("multipart/mixed"));
+
+		String body = contentAsString(result, materializer);
+		assertTrue(body.endsWith("\r\n-----\r\n"));
+		List<JsonNode> parts = parts(body);
+		assertEquals(4, parts.size());
+
+		JsonNode initial = parts.get(0);
+		assertEquals("Product 1", initial.path("data").path("productById").path("name").asText());
+		// deferred fields are left out of the initial payload
+		assertTrue(initial.path("data").path("productById").path("related").isMissingNode());
+		assertTrue(initial.path("hasNext").asBoolean());
+		// the deferred children were not loaded together with the product
+		assertFalse(fetcher.includes.get(0).contains(ProductDataFetcher.RELATED));
+		assertFalse(fetcher.includes.get(0).contains(ProductDataFetcher.INSTANCE));
+
+		// each increment holds the object at its path with the deferred field set
+		List<String> fields = new ArrayList<>();
+		for (JsonNode part : parts.subList(1, 3)) {
+			JsonNode incremental = part.path("incremental").get(0);
+			assertEquals("productById", incremental.path("path").get(0).asText());
+			assertEquals(1, incremental.path("path").size());
+			fields.add(incremental.path("data").fieldNames().next());
+			assertTrue(part.path("hasNext").asBoolean());
+		}
+		assertTrue(fields.contains("related") && fields.contains("instance"));
+		JsonNode related = parts.get(fields.indexOf("related") + 1).path("incremental").get(0).path("data").path("related");
+		assertEquals(3, related.size());
+		assertFalse(parts.get(3).path("hasNext").asBoolean());
+	}
+
+	@Test
+	public void clientsWithoutMultipartGetDeferredFieldsInOneResponse() {
+		Result result = post(DEFERRED, false);
+		assertEquals("application/json", result.contentType().get());
+
+		JsonNode product = Json.parse(contentAsString(result, materializer)).path("data").path("productById");
+		assertEquals("Product 1", product.path("name").asText());
+		assertEquals(3, product.path("related").size());
+		assertEquals("ACTIVE", product.path("instance").path("status").asText());
+	}
+
+	@Test
+	public void deferredFieldsInsideListsAreMergedAtTheirIndex() {
+		Result result = post("{ productById(id: \"1\") { related { id instance @defer { id status } } } }", false);
+
+		JsonNode related = Json.parse(contentAsString(result, materializer)).path("data").path("productById").path("related");
+		assertEquals(3, related.size());
+		for (JsonNode product : related) {
+			// each product has the instance of the same id
+			assertEquals(product.path("id").asText(), product.path("instance").path("id").asText());
+		}
+	}
+
+	@Test
+	public void fieldsDeferredInsideFragmentsAreNotLoadedWithTheProduct() {
+		Result result = post("{ productById(id: \"1\") { id ... on Product { related @defer { id } } ...Instance } }"
+				+ " fragment Instance on Product { instance @defer { status } }", true);
+		assertTrue(result.contentType().get().startsWith("multipart/mixed"));
+		assertEquals(4, parts(contentAsString(result, materializer)).size());
+		assertFalse(fetcher.includes.get(0).contains(ProductDataFetcher.RELATED));
+		assertFalse(fetcher.includes.get(0).contains(ProductDataFetcher.INSTANCE));
+	}
+
+	@Test
+	public void queriesWithoutDeferAreSingleJson() {
+		Result result = post("{ productById(id: \"1\") { id related { id } } }", true);
+		assertEquals("application/json", result.contentType().get());
+		assertTrue(fetcher.includes.get(0).contains(ProductDataFetcher.RELATED));
+	}
+
+	private Result post(String query, boolean multipart) {
+		RequestBuilder request = new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query));
+		if (multipart) {
+			request.header(HeaderNames.ACCEPT, "multipart/mixed; deferSpec=20220824, application/json");
+		}
+		return route(app, request);
+	}
+
+	private static List<JsonNode> parts(String body) {
+		List<JsonNode> parts = new ArrayList<>();
+		for (String part : body.split("\r\n---")) {
+			int json = part.indexOf("\r\n\r\n");
+			if (json >= 0) {
+				parts.add(Json.parse(part.substring(json + 4)));
+			}
+		}
+		return parts;
+	}
+
+	@Singleton
+	static class RecordingProductDataFetcher extends ProductDataFetcher {
+
+		final List<Set<String>> includes = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected Map<String, CompletableFuture<?>> prefetch(Long id, Set<String> include) {
+			includes.add(include);
+			return super.prefetch(id, include);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import controllers.GraphQLController.GraphQLRequest;
+import java.util.List;
+import org.junit.Test;
+import play.libs.Json;
+
+/**
+ * Request binding by {@link GraphQLBodyParser#read} on the raw bytes. Its cost against the former JsonNode
+ * tree path is measured by {@code RequestParsingBenchmark} in the benchmarks subproject.
+ */
+public class GraphQLBodyParserTest {
+
+	private static final String QUERY = "query Products($ids: [ID!]) { productById(id: \"1\") { id name details { id name } } }";
+
+	@Test
+	public void bindsJsonAndGraphQLBodies() throws Exception {
+		GraphQLRequest json = GraphQLBodyParser.read("application/json; charset=utf-8", payload(3)).getRequests().get(0);
+		assertEquals(QUERY, json.getQuery());
+		assertEquals("Products", json.getOperationName());
+		assertEquals(3, ((List<?>) json.getVariables().get("filters")).size());
+
+		GraphQLRequest graphql = GraphQLBodyParser.read(GraphQLBodyParser.CONTENT_TYPE_GRAPHQL, ByteString.fromString(QUERY))
+				.getRequests().get(0);
+		assertEquals(QUERY, graphql.getQuery());
+		assertNull(graphql.getOperationName());
+	}
+
+	private static ByteString payload(int filters) {
+		ObjectNode body = Json.newObject();
+		body.put("query", QUERY);
+		body.put("operationName", "Products");
+		ArrayNode list = body.putObject("variables").putArray("filters");
+		for (int i = 0; i < filters; i++) {
+			list.addObject()
+					.put("id", String.valueOf(i))
+					.put("categoryName", "The Category Name " + i)
+					.put("provisionAllowed", i % 2 == 0)
+					.putArray("tags").add("catalog").add("offering").add(i);
+		}
+		return ByteString.fromString(Json.stringify(body));
+	}
+}
@@ -0,0 +1,52 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.fakeApplication;
+import static play.test.Helpers.route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class MetricsControllerTest {
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = fakeApplication();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void exposesPhaseAndFieldTimings() {
+		String query = "query ProductPage { productById(id: \"1\") { id related { id details { id } } } }";
+		route(app, new RequestBuilder().method(POST).uri("/graphql").bodyJson(Json.newObject().put("query", query)));
+
+		Result result = route(app, new RequestBuilder().method(GET).uri("/metrics"));
+		assertEquals(200, result.status());
+
+		String metrics = contentAsString(result);
+		assertTrue(metrics.contains("graphql_phase_seconds{phase=\"execute\",operation=\"ProductPage\",quantile=\"0.99\"}"));
+		assertTrue(metrics.contains("graphql_phase_seconds_count{phase=\"parse\",operation=\"ProductPage\"} 1.0"));
+		assertTrue(metrics.contains("graphql_field_fetch_seconds_count{field=\"Query.productById\"} 1.0"));
+		assertTrue(metrics.contains("graphql_field_fetch_seconds_count{field=\"Product.details\"} 3.0"));
+		assertTrue(metrics.contains("graphql_field_fetch_errors_total{field=\"Product.related\"} 0.0"));
+		assertFalse(metrics.contains("field=\"Product.id\""));
+	}
+}
@@ -0,0 +1,85 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.fakeApplication;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class PersistedQueryTest {
+
+	private static final String QUERY = "{ productById(id: \"7\") { id name } }";
+	private static final String HASH = Hashing.sha256().hashString(QUERY, StandardCharsets.UTF_8).toString();
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = fakeApplication();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void unknownHashIsRegisteredOnRetry() {
+		Result miss = post(extensions(HASH));
+		assertEquals(200, miss.status());
+		assertTrue(contentAsString(miss).contains("PersistedQueryNotFound"));
+
+		Result register = post(extensions(HASH).put("query", QUERY));
+		assertEquals(200, register.status());
+		assertTrue(contentAsString(register).contains("\"productById\""));
+
+		Result hit = post(extensions(HASH));
+		assertEquals(200, hit.status());
+		assertTrue(contentAsString(hit).contains("\"productById\""));
+	}
+
+	@Test
+	public void hashOnlyGetIsServedFromTheStore() throws Exception {
+		post(extensions(HASH).put("query", QUERY));
+
+		String extensions = Json.stringify(extensions(HASH).get("extensions"));
+		Result result = route(app, new RequestBuilder().method(GET)
+				.uri("/graphql?extensions=" + URLEncoder.encode(extensions, "UTF-8")));
+		assertEquals(200, result.status());
+		assertTrue(contentAsString(result).contains("\"productById\""));
+	}
+
+	@Test
+	public void mismatchedHashIsRejected() {
+		Result result = post(extensions("0000").put("query", QUERY));
+		assertEquals(400, result.status());
+	}
+
+	private Result post(ObjectNode body) {
+		return route(app, new RequestBuilder().method(POST).uri("/graphql").bodyJson(body));
+	}
+
+	private static ObjectNode extensions(String hash) {
+		ObjectNode body = Json.newObject();
+		body.putObject("extensions").putObject("persistedQuery")
+				.put("version", 1)
+				.put("sha256Hash", hash);
+		return body;
+	}
+}
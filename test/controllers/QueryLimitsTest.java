@@ -0,0 +1,111 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import admission.AdmissionControl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class QueryLimitsTest {
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.limits.maxDepth", 4)
+				.configure("graphql.limits.maxComplexity", 50)
+				.configure("graphql.admission.refillPerSecond", 1)
+				.build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void shallowQueryRuns() {
+		JsonNode response = post("{ productById(id: \"1\") { id name } }");
+		assertTrue(response.path("errors").isMissingNode());
+		assertEquals("1", response.path("data").path("productById").path("id").asText());
+	}
+
+	@Test
+	public void tooDeepQueryIsRejectedBeforeExecution() {
+		JsonNode response = post("{ productById(id: \"1\") { related { related { related { id } } } } }");
+		assertTrue(response.path("data").isNull());
+		assertEquals("QUERY_LIMIT_EXCEEDED", response.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	@Test
+	public void tooExpensiveQueryIsRejectedBeforeExecution() {
+		JsonNode response = post("{ productById(id: \"1\") { related { related { id } } } }");
+		assertTrue(response.path("data").isNull());
+		assertEquals("QUERY_LIMIT_EXCEEDED", response.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	@Test
+	public void repeatedTooExpensiveQueryIsRejectedAndChargedEveryTime() {
+		String query = "{ productById(id: \"1\") { related { related { id } } } }";
+		for (int i = 0; i < 2; i++) {
+			Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+					.header("X-API-Key", "over-limit")
+					.bodyJson(Json.newObject().put("query", query)));
+			assertEquals(200, result.status());
+			JsonNode response = Json.parse(contentAsString(result));
+			assertTrue(response.path("data").isNull());
+			assertEquals("QUERY_LIMIT_EXCEEDED", response.path("errors").get(0).path("extensions").path("code").asText());
+		}
+
+		// both were charged more than the limit of 50, as they would have cost had they run
+		AdmissionControl admissionControl = app.injector().instanceOf(AdmissionControl.class);
+		long capacity = admissionControl.getBudgets().getCapacity();
+		assertTrue(admissionControl.charge("key:over-limit", 1).getRemaining() < capacity - 2 * 50 - 1);
+	}
+
+	@Test
+	public void connectionCostScalesWithThePageSize() {
+		String query = "{ productById(id: \"1\") { relatedConnection(first: %d) { edges { cursor } } } }";
+		assertTrue(post(String.format(query, 2)).path("errors").isMissingNode());
+
+		JsonNode response = post(String.format(query, 100));
+		assertEquals("QUERY_LIMIT_EXCEEDED", response.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	@Test
+	public void connectionCostIsCheckedWithTheVariablesOfEveryExecution() {
+		String query = "query($n: Int) { productById(id: \"1\") { relatedConnection(first: $n) { edges { cursor } } } }";
+		assertTrue(post(query, Json.newObject().put("n", 2)).path("errors").isMissingNode());
+
+		// the same document, now parsed and validated already
+		JsonNode response = post(query, Json.newObject().put("n", 100));
+		assertTrue(response.path("data").isNull());
+		assertEquals("QUERY_LIMIT_EXCEEDED", response.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	private JsonNode post(String query) {
+		return post(query, Json.newObject());
+	}
+
+	private JsonNode post(String query, ObjectNode variables) {
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query).set("variables", variables)));
+		assertEquals(200, result.status());
+		return Json.parse(contentAsString(result));
+	}
+}
@@ -0,0 +1,107 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.HeaderNames;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class ResponseCacheTest {
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.responseCache.enabled", true)
+				.build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void equivalentQueriesShareOneExecution() {
+		Result first = post("query Cached { productById(id: \"1\") { id details { id } } }");
+		Result second = post("# same query\nquery Cached {\n  productById(id: \"1\") {\n    id\n    details { id }\n  }\n}");
+
+		assertEquals(200, second.status());
+		assertTrue(first.header(HeaderNames.ETAG).isPresent());
+		assertEquals(first.header(HeaderNames.ETAG), second.header(HeaderNames.ETAG));
+		assertEquals(contentAsString(first), contentAsString(second));
+		// the smallest hint is the 60 seconds of Query.productById
+		assertTrue(second.header(HeaderNames.CACHE_CONTROL).get().matches("max-age=(59|60)"));
+
+		String metrics = contentAsString(route(app, new RequestBuilder().method(GET).uri("/metrics")));
+		assertTrue(metrics.contains("graphql_phase_seconds_count{phase=\"execute\",operation=\"Cached\"} 1.0"));
+	}
+
+	@Test
+	public void matchingEtagIsAnsweredWith304() {
+		String query = "{ productById(id: \"2\") { id } }";
+		String etag = post(query).header(HeaderNames.ETAG).get();
+
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.header(HeaderNames.IF_NONE_MATCH, etag)
+				.bodyJson(Json.newObject().put("query", query)));
+		assertEquals(304, result.status());
+		assertEquals(etag, result.header(HeaderNames.ETAG).get());
+	}
+
+	@Test
+	public void differentVariablesAreDifferentEntries() {
+		String query = "query Product($id: String!) { productById(id: $id) { id } }";
+		Result one = route(app, new RequestBuilder().method(POST).uri("/graphql").bodyJson(Json.newObject()
+				.put("query", query).set("variables", Json.newObject().put("id", "1"))));
+		Result two = route(app, new RequestBuilder().method(POST).uri("/graphql").bodyJson(Json.newObject()
+				.put("query", query).set("variables", Json.newObject().put("id", "2"))));
+		assertFalse(one.header(HeaderNames.ETAG).equals(two.header(HeaderNames.ETAG)));
+	}
+
+	@Test
+	public void errorsAndUnhintedQueriesAreNotCached() {
+		Result error = post("{ productById(id: \"\") { id } }");
+		assertTrue(contentAsString(error).contains("\"errors\""));
+		assertFalse(error.header(HeaderNames.ETAG).isPresent());
+
+		assertFalse(post("{ __typename }").header(HeaderNames.ETAG).isPresent());
+	}
+
+	@Test
+	public void writesEvictOnlyTheResponsesOfTheirProducts() {
+		String one = "query One { productById(id: \"1\") { name related { id } } }";
+		String two = "query Two { productById(id: \"2\") { name } }";
+		post(one);
+		post(two);
+
+		post("mutation { updateProduct(input: { id: \"3\", name: \"Renamed\" }) { name } }");
+		post(one);
+		post(two);
+
+		// product 3 is related to product 1, product 2 does not depend on it
+		String metrics = contentAsString(route(app, new RequestBuilder().method(GET).uri("/metrics")));
+		assertTrue(metrics.contains("graphql_phase_seconds_count{phase=\"execute\",operation=\"One\"} 2.0"));
+		assertTrue(metrics.contains("graphql_phase_seconds_count{phase=\"execute\",operation=\"Two\"} 1.0"));
+	}
+
+	private Result post(String query) {
+		return route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)));
+	}
+}
@@ -0,0 +1,56 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * {@link GraphQLController#writeJson} writes the same bytes as the former
+ * {@code ok(MAPPER.writeValueAsString(result))} path. Their allocation is compared by
+ * {@code SerializationBenchmark} in the benchmarks subproject.
+ */
+public class ResponseWriterTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void streamingWriterMatchesStringPath() throws Exception {
+		Map<String, Object> result = largeResult(2000);
+
+		ByteString expected = ByteString.fromString(MAPPER.writeValueAsString(result), "UTF-8");
+		assertEquals(expected, GraphQLController.writeJson(result));
+	}
+
+	private static Map<String, Object> largeResult(int relatedCount) {
+		List<Object> related = new ArrayList<>();
+		for (int i = 0; i < relatedCount; i++) {
+			Map<String, Object> detail = new LinkedHashMap<>();
+			detail.put("id", String.valueOf(i));
+			detail.put("name", "product details");
+			detail.put("description", "The product detailed description.");
+
+			Map<String, Object> product = new LinkedHashMap<>();
+			product.put("id", String.valueOf(i));
+			product.put("name", "ProductName");
+			product.put("description", "Here is the product description.");
+			product.put("details", Collections.singletonList(detail));
+			related.add(product);
+		}
+		Map<String, Object> product = new LinkedHashMap<>();
+		product.put("id", "1");
+		product.put("related", related);
+
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("productById", product);
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("data", data);
+		return result;
+	}
+}
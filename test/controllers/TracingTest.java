@@ -0,0 +1,63 @@
+package controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.test.Helpers;
+
+public class TracingTest {
+
+	private static final String QUERY = "{ productById(id: \"1\") { id details { id } } }";
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder().build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void traceHeaderAddsResolverTimings() {
+		JsonNode extensions = post(true).path("extensions");
+		assertEquals(1, extensions.path("tracing").path("version").asInt());
+		JsonNode resolvers = extensions.path("tracing").path("execution").path("resolvers");
+		assertTrue(resolvers.size() > 0);
+		assertTrue(resolvers.get(0).has("startOffset"));
+		assertTrue(resolvers.get(0).has("duration"));
+		assertTrue(extensions.has("schemaVersion"));
+	}
+
+	@Test
+	public void noTracingWithoutHeader() {
+		JsonNode extensions = post(false).path("extensions");
+		assertTrue(extensions.path("tracing").isMissingNode());
+		assertTrue(extensions.has("schemaVersion"));
+	}
+
+	private JsonNode post(boolean traced) {
+		ObjectNode body = Json.newObject().put("query", QUERY);
+		RequestBuilder request = new RequestBuilder().method(POST).uri("/graphql").bodyJson(body);
+		if (traced) {
+			request.header("X-GraphQL-Trace", "1");
+		}
+		return Json.parse(contentAsString(route(app, request)));
+	}
+}
@@ -0,0 +1,35 @@
+package metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsCoverValuesWithBoundedError() {
+		for (long micros = 0; micros < 1_000_000; micros += 7) {
+			int index = LatencyHistogram.bucketIndex(micros);
+			long upper = LatencyHistogram.upperBoundMicros(index);
+			assertTrue(micros + " < " + upper, micros < upper);
+			assertTrue(micros + " within 13% of " + upper, upper <= Math.max(micros + 1, micros * 1.13));
+		}
+	}
+
+	@Test
+	public void quantilesCountsAndErrors() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i), i > 98);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(2, histogram.getErrorCount());
+		assertEquals(5.05, histogram.getSumSeconds(), 1e-9);
+		assertEquals(0.050, histogram.getQuantileSeconds(0.5), 0.050 * 0.13);
+		assertEquals(0.099, histogram.getQuantileSeconds(0.99), 0.099 * 0.13);
+		assertEquals(0, new LatencyHistogram().getQuantileSeconds(0.5), 0);
+	}
+}
@@ -0,0 +1,127 @@
+package repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import entity.Product;
+import entity.ProductInstance;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import metrics.GraphQLMetrics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import play.Configuration;
+import play.Environment;
+import play.Mode;
+import subscriptions.InstanceStatusEvents;
+
+public class InMemoryCatalogRepositoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final RecordingEvents events = new RecordingEvents();
+
+	@Test
+	public void answersInTheOrderOfTheKeys() throws Exception {
+		InMemoryCatalogRepository repository = repository("{\"products\": ["
+				+ "{\"id\": 7, \"name\": \"Seven\", \"related\": [9, 8, 404], \"details\": [{\"id\": 71, \"card\": true}],"
+				+ " \"instance\": {\"id\": 70, \"requestId\": 700}},"
+				+ "{\"id\": 8, \"name\": \"Eight\"},"
+				+ "{\"id\": 9, \"name\": \"Nine\"}]}");
+
+		assertEquals(Arrays.asList("Nine", null, "Seven"),
+				repository.findProducts(Arrays.asList(9L, 404L, 7L)).stream()
+						.map(product -> product == null ? null : product.getName()).collect(Collectors.toList()));
+		assertEquals(Arrays.asList(9L, 8L), ids(repository.findRelatedByProductIds(Arrays.asList(7L)).get(0)));
+		assertTrue(repository.findRelatedByProductIds(Arrays.asList(404L)).get(0).isEmpty());
+		assertTrue(repository.findDetailsByProductIds(Arrays.asList(7L)).get(0).iterator().next().card);
+		assertTrue(repository.findDetailsByProductIds(Arrays.asList(8L)).get(0).isEmpty());
+		assertEquals(Long.valueOf(70), repository.findInstancesByProductIds(Arrays.asList(7L)).get(0).id);
+		assertNull(repository.findInstancesByProductIds(Arrays.asList(8L)).get(0));
+		assertEquals(Long.valueOf(7), repository.findInstancesByRequestIds(Arrays.asList(700L, 701L)).get(0).productId);
+		assertNull(repository.findInstancesByRequestIds(Arrays.asList(701L)).get(0));
+	}
+
+	@Test
+	public void productsBelongToTheCaller() throws Exception {
+		InMemoryCatalogRepository repository = repository("{\"products\": [{\"id\": 1, \"name\": \"One\"}]}");
+		Product first = repository.findProducts(Arrays.asList(1L)).get(0);
+		first.setName("Changed");
+		Product second = repository.findProducts(Arrays.asList(1L)).get(0);
+		assertNotSame(first, second);
+		assertEquals("One", second.getName());
+	}
+
+	@Test
+	public void refreshSwapsTheSnapshot() throws Exception {
+		InMemoryCatalogRepository repository = repository("{\"products\": [{\"id\": 1, \"name\": \"One\"}]}");
+		write("{\"products\": [{\"id\": 2, \"name\": \"Two\"}]}");
+		repository.refresh();
+		assertNull(repository.findProducts(Arrays.asList(1L)).get(0));
+		assertEquals("Two", repository.findProducts(Arrays.asList(2L)).get(0).getName());
+	}
+
+	@Test
+	public void refreshPublishesChangedInstanceStatuses() throws Exception {
+		InMemoryCatalogRepository repository = repository("{\"products\": ["
+				+ "{\"id\": 1, \"instance\": {\"id\": 10, \"status\": \"PROVISIONING\"}},"
+				+ "{\"id\": 2, \"instance\": {\"id\": 20, \"status\": \"ACTIVE\"}}]}");
+		write("{\"products\": ["
+				+ "{\"id\": 1, \"instance\": {\"id\": 10, \"status\": \"ACTIVE\"}},"
+				+ "{\"id\": 2, \"instance\": {\"id\": 20, \"status\": \"ACTIVE\"}},"
+				+ "{\"id\": 3, \"instance\": {\"id\": 30, \"status\": \"ACTIVE\"}}]}");
+		repository.refresh();
+
+		assertEquals(1, events.published.size());
+		assertEquals(Long.valueOf(1), events.published.get(0).productId);
+		assertEquals("ACTIVE", events.published.get(0).status);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateIdsAreRejected() {
+		new LongIndex(new long[] { 1, 2, 1 });
+	}
+
+	private InMemoryCatalogRepository repository(String catalog) throws Exception {
+		write(catalog);
+		ClassLoader loader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() }, null);
+		return new InMemoryCatalogRepository(new Configuration(ConfigFactory.parseString(
+				"graphql.catalog { resource=\"catalog.json\", refreshInterval=0 }")),
+				new Environment(new File("."), loader, Mode.TEST), null, events);
+	}
+
+	private void write(String catalog) throws Exception {
+		Files.write(new File(folder.getRoot(), "catalog.json").toPath(), catalog.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<Long> ids(Collection<Product> products) {
+		return products.stream().map(Product::getId).collect(Collectors.toList());
+	}
+
+	static class RecordingEvents extends InstanceStatusEvents {
+
+		final List<ProductInstance> published = new ArrayList<>();
+
+		RecordingEvents() {
+			super(new Configuration(ConfigFactory.empty()), new GraphQLMetrics());
+		}
+
+		@Override
+		public void publish(ProductInstance instance) {
+			published.add(instance);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import entity.Product;
+import exception.CatalogException;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.Configuration;
+import play.Environment;
+import play.inject.ApplicationLifecycle;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.HeaderNames;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+import repository.CatalogRepository;
+import repository.InMemoryCatalogRepository;
+import repository.ProductUpdate;
+import subscriptions.InstanceStatusEvents;
+
+public class CatalogWriterTest {
+
+	private Application app;
+	private CatalogWriter writer;
+	private CountingCatalogRepository repository;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.mutations.coalesceWindow", "50ms")
+				.overrides(bind(CatalogRepository.class).to(CountingCatalogRepository.class))
+				.build();
+		Helpers.start(app);
+		writer = app.injector().instanceOf(CatalogWriter.class);
+		repository = (CountingCatalogRepository) app.injector().instanceOf(CatalogRepository.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void concurrentUpdatesAreCoalescedIntoOneBulkWrite() throws Exception {
+		CompletableFuture<Product> first = writer.submit(update(1L, "First name", null));
+		CompletableFuture<Product> second = writer.submit(update(1L, null, "New description"));
+		CompletableFuture<Product> third = writer.submit(update(1L, "Last name", null));
+		CompletableFuture<Product> other = writer.submit(update(2L, "Other", null));
+
+		Product written = third.get(5, TimeUnit.SECONDS);
+		assertEquals("Last name", written.getName());
+		assertEquals("New description", written.getDescription());
+		assertEquals(written, first.get());
+		assertEquals(written, second.get());
+		assertEquals("Other", other.get().getName());
+		assertEquals(Arrays.asList(Arrays.asList(1L, 2L)), repository.batches);
+	}
+
+	@Test
+	public void unknownProductFailsOnlyItsOwnUpdate() throws Exception {
+		CompletableFuture<Product> unknown = writer.submit(update(404L, "Nobody", null));
+		CompletableFuture<Product> known = writer.submit(update(1L, "Somebody", null));
+		try {
+			unknown.get(5, TimeUnit.SECONDS);
+			fail("expected " + CatalogWriter.NOT_FOUND);
+		} catch (ExecutionException e) {
+			assertEquals(CatalogWriter.NOT_FOUND, ((CatalogException) e.getCause()).getExtensions().get("code"));
+		}
+		assertEquals("Somebody", known.get().getName());
+	}
+
+	@Test
+	public void mutationsEvictCachedReads() {
+		String query = "{ productById(id: \"1\") { name details { id name } } }";
+		JsonNode before = post(query);
+		assertEquals(1, before.path("data").path("productById").path("details").size());
+
+		JsonNode updated = post("mutation { updateProduct(input: { id: \"1\", name: \"Renamed\" }) { name } }");
+		assertEquals("Renamed", updated.path("data").path("updateProduct").path("name").asText());
+		post("mutation { upsertProductDetails(productId: \"1\", details: [{ id: \"12\", name: \"Specs\", type: \"text\" }])"
+				+ " { id } }");
+
+		JsonNode after = post(query).path("data").path("productById");
+		assertEquals("Renamed", after.path("name").asText());
+		List<String> detailIds = new ArrayList<>();
+		after.path("details").forEach(detail -> detailIds.add(detail.path("id").asText()));
+		assertEquals(Arrays.asList("11", "12"), detailIds);
+	}
+
+	@Test
+	public void mutationsEvictTheRelatedListsOfOtherProducts() {
+		String query = "{ productById(id: \"2\") { related { id name } } }";
+		assertEquals("Product 5", post(query).path("data").path("productById").path("related").get(0).path("name").asText());
+
+		post("mutation { updateProduct(input: { id: \"5\", name: \"Renamed\" }) { name } }");
+
+		JsonNode related = post(query).path("data").path("productById").path("related").get(0);
+		assertEquals("5", related.path("id").asText());
+		assertEquals("Renamed", related.path("name").asText());
+	}
+
+	@Test
+	public void batchesAreWrittenInOrder() throws Exception {
+		repository.hold = new CountDownLatch(1);
+		CompletableFuture<Product> first = writer.submit(update(1L, "First", null));
+		while (repository.batches.isEmpty()) {
+			Thread.sleep(10);
+		}
+		CompletableFuture<Product> second = writer.submit(update(1L, "Second", null));
+		Thread.sleep(200);
+		assertEquals(1, repository.batches.size());
+		assertFalse(second.isDone());
+
+		repository.hold.countDown();
+		assertEquals("First", first.get(5, TimeUnit.SECONDS).getName());
+		assertEquals("Second", second.get(5, TimeUnit.SECONDS).getName());
+		assertEquals("Second", repository.findProducts(Arrays.asList(1L)).get(0).getName());
+	}
+
+	@Test
+	public void unknownProductMutationReturnsAnError() {
+		JsonNode result = post("mutation { updateProduct(input: { id: \"404\", name: \"Nobody\" }) { name } }");
+		assertTrue(result.path("data").path("updateProduct").isNull());
+		assertEquals(CatalogWriter.NOT_FOUND, result.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	@Test
+	public void mutationsAreNotAllowedOverGet() throws Exception {
+		String mutation = "mutation Rename { updateProduct(input: { id: \"1\", name: \"Renamed\" }) { name } }";
+		Result result = route(app, new RequestBuilder().method(GET)
+				.uri("/graphql?query=" + URLEncoder.encode(mutation, "UTF-8")));
+
+		assertEquals(405, result.status());
+		assertEquals(POST, result.header(HeaderNames.ALLOW).get());
+		assertTrue(repository.batches.isEmpty());
+	}
+
+	private JsonNode post(String query) {
+		return Json.parse(contentAsString(route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)))));
+	}
+
+	private static ProductUpdate update(Long productId, String name, String description) {
+		ProductUpdate update = new ProductUpdate(productId);
+		update.setName(name);
+		update.setDescription(description);
+		return update;
+	}
+
+	@Singleton
+	public static class CountingCatalogRepository extends InMemoryCatalogRepository {
+
+		final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+		/** Holds the first write until counted down, when set. */
+		volatile CountDownLatch hold;
+
+		@Inject
+		public CountingCatalogRepository(Configuration configuration, Environment environment,
+				ApplicationLifecycle lifecycle, InstanceStatusEvents instanceStatusEvents) throws IOException {
+			super(configuration, environment, lifecycle, instanceStatusEvents);
+		}
+
+		@Override
+		public List<Product> updateProducts(List<ProductUpdate> updates) {
+			batches.add(updates.stream().map(ProductUpdate::getProductId).collect(Collectors.toList()));
+			CountDownLatch latch = hold;
+			if (latch != null && batches.size() == 1) {
+				try {
+					latch.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.updateProducts(updates);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import resolvers.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	private final CircuitBreaker breaker = new CircuitBreaker(2, 50, TimeUnit.MILLISECONDS);
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		assertTrue(breaker.allowRequest());
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+		assertEquals(State.CLOSED, breaker.getState());
+
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void halfOpenProbeDecidesTheState() throws Exception {
+		breaker.onFailure();
+		breaker.onFailure();
+		Thread.sleep(60);
+
+		assertTrue(breaker.allowRequest());
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		// only one probe at a time
+		assertFalse(breaker.allowRequest());
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(60);
+		assertTrue(breaker.allowRequest());
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void cancelledProbeCanBeRetried() throws Exception {
+		breaker.onFailure();
+		breaker.onFailure();
+		Thread.sleep(60);
+
+		assertTrue(breaker.allowRequest());
+		breaker.onCancelled();
+		assertTrue(breaker.allowRequest());
+	}
+}
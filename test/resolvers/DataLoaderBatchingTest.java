@@ -0,0 +1,124 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import cache.ResolverCache;
+import com.google.inject.Singleton;
+import entity.Product;
+import entity.ProductDetail;
+import entity.ProductInstance;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class DataLoaderBatchingTest {
+
+	private CountingProductDataFetcher fetcher;
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.responseCache.enabled", false)
+				.overrides(bind(ProductDataFetcher.class).to(CountingProductDataFetcher.class))
+				.build();
+		Helpers.start(app);
+		fetcher = (CountingProductDataFetcher) app.injector().instanceOf(ProductDataFetcher.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void nestedRelatedDetailsAreFetchedOncePerLevel() {
+		String query = "{ productById(id: \"1\") { related { related { details { id } } } } }";
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)));
+		assertEquals(contentAsString(result), 200, result.status());
+
+		// one batched call for each level of related products
+		assertEquals(2, fetcher.relatedBatches.size());
+		assertEquals(1, fetcher.relatedBatches.get(0).size());
+		assertEquals(3, fetcher.relatedBatches.get(1).size());
+		// and a single call for the details of all nine leaf products
+		assertEquals(1, fetcher.detailBatches.size());
+		assertEquals(9, fetcher.detailBatches.get(0).size());
+	}
+
+	@Test
+	public void detailsPrefetchedWithTheProductAreNotFetchedAgain() {
+		String query = "{ productById(id: \"1\") { id details { id name } } }";
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)));
+		assertEquals(contentAsString(result), 200, result.status());
+
+		assertEquals(1, fetcher.detailBatches.size());
+	}
+
+	@Test
+	public void childrenAreCachedApartFromTheProduct() {
+		String query = "{ productById(id: \"1\") { id instance { status } } }";
+		post(query);
+		app.injector().instanceOf(ResolverCache.class).invalidate(ProductDataFetcher.PRODUCT_INSTANCE, 1L);
+		post(query);
+
+		// the product came from its cache entry, the evicted instance from the backend
+		assertEquals(1, fetcher.productCalls.get());
+		assertEquals(2, fetcher.instanceBatches.size());
+	}
+
+	private void post(String query) {
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)));
+		assertEquals(contentAsString(result), 200, result.status());
+	}
+
+	@Singleton
+	static class CountingProductDataFetcher extends ProductDataFetcher {
+
+		final List<List<Long>> detailBatches = new CopyOnWriteArrayList<>();
+		final List<List<Long>> relatedBatches = new CopyOnWriteArrayList<>();
+		final List<List<Long>> instanceBatches = new CopyOnWriteArrayList<>();
+		final AtomicInteger productCalls = new AtomicInteger();
+
+		@Override
+		protected Product getProduct(Long id) {
+			productCalls.incrementAndGet();
+			return super.getProduct(id);
+		}
+
+		@Override
+		protected List<ProductInstance> getProductInstances(List<Long> ids) {
+			instanceBatches.add(ids);
+			return super.getProductInstances(ids);
+		}
+
+		@Override
+		protected List<Collection<ProductDetail>> getProductDetails(List<Long> ids) {
+			detailBatches.add(ids);
+			return super.getProductDetails(ids);
+		}
+
+		@Override
+		protected List<Collection<Product>> getRelatedOfferings(List<Long> ids) {
+			relatedBatches.add(ids);
+			return super.getRelatedOfferings(ids);
+		}
+	}
+}
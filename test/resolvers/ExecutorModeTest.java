@@ -0,0 +1,83 @@
+package resolvers;
+
+import static org.junit.Assert.assertTrue;
+import static play.inject.Bindings.bind;
+
+import entity.Product;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.test.Helpers;
+import schema.GraphQLProvider;
+
+/**
+ * Concurrent queries whose resolvers block on a stub backend complete in both executor modes. How
+ * long they take is measured by {@code ExecutorModeBenchmark} in the benchmarks project.
+ */
+public class ExecutorModeTest {
+
+	private static final int BACKEND_LATENCY_MILLIS = 5;
+	private static final int CONCURRENT_QUERIES = 200;
+	private static final int PLATFORM_THREADS = 8;
+
+	@Test
+	public void platformPoolCompletesBlockingResolvers() throws Exception {
+		run(ResolverExecutor.MODE_PLATFORM);
+	}
+
+	@Test
+	public void virtualThreadsCompleteBlockingResolvers() throws Exception {
+		run(ResolverExecutor.MODE_VIRTUAL);
+	}
+
+	private void run(String mode) throws Exception {
+		Application app = new GuiceApplicationBuilder()
+				.configure("graphql.executor.mode", mode)
+				.configure("graphql.executor.threads", PLATFORM_THREADS)
+				.configure("graphql.executor.queueSize", CONCURRENT_QUERIES)
+				// queued calls of the platform pool would otherwise time out
+				.configure("graphql.resilience.timeouts.Query.productById", "60s")
+				.overrides(bind(ProductDataFetcher.class).to(StubBackendProductDataFetcher.class))
+				.build();
+		Helpers.start(app);
+		try {
+			GraphQLProvider provider = app.injector().instanceOf(GraphQLProvider.class);
+			List<CompletableFuture<ExecutionResult>> results = new ArrayList<>(CONCURRENT_QUERIES);
+			for (int i = 1; i <= CONCURRENT_QUERIES; i++) {
+				results.add(provider.graphQL().executeAsync(ExecutionInput.newExecutionInput()
+						.query("{ productById(id: \"" + i + "\") { id name } }")
+						.dataLoaderRegistry(provider.newDataLoaderRegistry())
+						.build()));
+			}
+			CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).get(60, TimeUnit.SECONDS);
+
+			for (CompletableFuture<ExecutionResult> result : results) {
+				assertTrue(result.get().getErrors().toString(), result.get().getErrors().isEmpty());
+			}
+		} finally {
+			Helpers.stop(app);
+		}
+	}
+
+	/**
+	 * Blocks the calling thread for the backend latency, like a JDBC or HTTP client would.
+	 */
+	static class StubBackendProductDataFetcher extends ProductDataFetcher {
+
+		@Override
+		protected Product getProduct(Long id) {
+			try {
+				Thread.sleep(BACKEND_LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getProduct(id);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import entity.Product;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.Configuration;
+import play.Environment;
+import play.inject.ApplicationLifecycle;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.test.Helpers;
+import repository.CatalogRepository;
+import repository.InMemoryCatalogRepository;
+import subscriptions.InstanceStatusEvents;
+
+public class PaginationTest {
+
+	private Application app;
+	private PagingCatalogRepository repository;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.responseCache.enabled", false)
+				.overrides(bind(CatalogRepository.class).to(PagingCatalogRepository.class))
+				.build();
+		Helpers.start(app);
+		repository = (PagingCatalogRepository) app.injector().instanceOf(CatalogRepository.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void pagesFollowTheCursors() {
+		JsonNode first = related("first: 2");
+		assertEquals(2, first.path("edges").size());
+		assertEquals("2", first.path("edges").get(0).path("node").path("id").asText());
+		assertTrue(first.path("pageInfo").path("hasNextPage").asBoolean());
+		assertFalse(first.path("pageInfo").path("hasPreviousPage").asBoolean());
+
+		String after = first.path("pageInfo").path("endCursor").asText();
+		JsonNode second = related("first: 2, after: \"" + after + "\"");
+		assertEquals(1, second.path("edges").size());
+		assertEquals("4", second.path("edges").get(0).path("node").path("id").asText());
+		assertFalse(second.path("pageInfo").path("hasNextPage").asBoolean());
+		assertTrue(second.path("pageInfo").path("hasPreviousPage").asBoolean());
+
+		// one row beyond the page, from the offset after the cursor
+		assertEquals(Arrays.asList("0:3", "2:3"), repository.relatedWindows);
+	}
+
+	@Test
+	public void totalCountIsOnlyCountedWhenSelected() {
+		related("first: 1");
+		assertEquals(0, repository.relatedCounts.get());
+
+		JsonNode result = post("{ productById(id: \"1\") { relatedConnection(first: 1) { totalCount } "
+				+ "detailsConnection { totalCount edges { node { id } } } } }").path("data").path("productById");
+		assertEquals(3, result.path("relatedConnection").path("totalCount").asInt());
+		assertEquals(1, result.path("detailsConnection").path("totalCount").asInt());
+		assertEquals("11", result.path("detailsConnection").path("edges").get(0).path("node").path("id").asText());
+		assertEquals(1, repository.relatedCounts.get());
+	}
+
+	@Test
+	public void foreignCursorsAndOversizedPagesAreRejected() {
+		JsonNode cursor = post("{ productById(id: \"1\") { relatedConnection(after: \"not-a-cursor\") { totalCount } } }");
+		assertEquals("BAD_USER_INPUT", cursor.path("errors").get(0).path("extensions").path("code").asText());
+
+		JsonNode oversized = post("{ productById(id: \"1\") { relatedConnection(first: 1000) { totalCount } } }");
+		assertEquals("BAD_USER_INPUT", oversized.path("errors").get(0).path("extensions").path("code").asText());
+	}
+
+	@Test
+	public void cursorsRoundTrip() {
+		assertEquals(0, Pagination.offset(null));
+		assertEquals(8, Pagination.offset(Pagination.cursor(7)));
+	}
+
+	private JsonNode related(String arguments) {
+		return post("{ productById(id: \"1\") { relatedConnection(" + arguments + ") "
+				+ "{ edges { cursor node { id } } pageInfo { hasNextPage hasPreviousPage endCursor } } } }")
+				.path("data").path("productById").path("relatedConnection");
+	}
+
+	private JsonNode post(String query) {
+		return Json.parse(contentAsString(route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", query)))));
+	}
+
+	@Singleton
+	public static class PagingCatalogRepository extends InMemoryCatalogRepository {
+
+		final List<String> relatedWindows = new CopyOnWriteArrayList<>();
+		final AtomicInteger relatedCounts = new AtomicInteger();
+
+		@Inject
+		public PagingCatalogRepository(Configuration configuration, Environment environment,
+				ApplicationLifecycle lifecycle, InstanceStatusEvents instanceStatusEvents) throws IOException {
+			super(configuration, environment, lifecycle, instanceStatusEvents);
+		}
+
+		@Override
+		public List<List<Product>> findRelatedPages(List<Long> productIds, int offset, int limit) {
+			relatedWindows.add(offset + ":" + limit);
+			return super.findRelatedPages(productIds, offset, limit);
+		}
+
+		@Override
+		public List<Integer> countRelated(List<Long> productIds) {
+			relatedCounts.incrementAndGet();
+			return super.countRelated(productIds);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class ResolverExecutorTest {
+
+	private static final String QUERY = "{ productById(id: \"1\") { id details { id } } }";
+
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.executor.threads", 1)
+				.configure("graphql.executor.queueSize", 1)
+				.configure("graphql.executor.retryAfter", 2)
+				.build();
+		Helpers.start(app);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void saturatedPoolShedsRequestsWith503() throws Exception {
+		ResolverExecutor executor = app.injector().instanceOf(ResolverExecutor.class);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Runnable blocked = () -> {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		executor.execute(blocked);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(blocked);
+
+		try {
+			Result shed = post();
+			assertEquals(503, shed.status());
+			assertEquals("2", shed.header("Retry-After").get());
+			assertTrue(contentAsString(shed).contains("SERVER_BUSY"));
+
+			String metrics = contentAsString(route(app, new RequestBuilder().method(GET).uri("/metrics")));
+			assertTrue(metrics.contains("graphql_executor_queue_depth 1.0"));
+			assertTrue(metrics.contains("graphql_executor_active_threads 1.0"));
+		} finally {
+			release.countDown();
+		}
+
+		for (int i = 0; i < 100 && executor.isSaturated(); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(200, post().status());
+	}
+
+	private Result post() {
+		return route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", QUERY)));
+	}
+}
@@ -0,0 +1,104 @@
+package resolvers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Singleton;
+import entity.Product;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class UpstreamTimeoutTest {
+
+	private static final String QUERY = "{ productById(id: \"1\") { id related { id } } }";
+
+	private HangingRelatedProductDataFetcher fetcher;
+	private Application app;
+
+	@Before
+	public void startApp() {
+		app = new GuiceApplicationBuilder()
+				.configure("graphql.responseCache.enabled", false)
+				.configure("graphql.resilience.timeouts.Product.related", "100ms")
+				.configure("graphql.resilience.breaker.failureThreshold", 2)
+				.configure("graphql.resilience.breaker.openDuration", "1m")
+				.overrides(bind(ProductDataFetcher.class).to(HangingRelatedProductDataFetcher.class))
+				.build();
+		Helpers.start(app);
+		fetcher = (HangingRelatedProductDataFetcher) app.injector().instanceOf(ProductDataFetcher.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void slowFieldResolvesToNullWithTheRestOfTheResponse() throws InterruptedException {
+		long start = System.nanoTime();
+		JsonNode response = post();
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+		assertEquals("1", response.path("data").path("productById").path("id").asText());
+		assertTrue(response.path("data").path("productById").path("related").isNull());
+		JsonNode error = response.path("errors").get(0);
+		assertEquals("UPSTREAM_TIMEOUT", error.path("extensions").path("code").asText());
+		assertEquals("related", error.path("path").get(1).asText());
+		// the timed out call was cancelled instead of holding its resolver thread
+		assertTrue(fetcher.interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void breakerOpensAfterRepeatedTimeouts() {
+		post();
+		post();
+		assertEquals(CircuitBreaker.State.OPEN,
+				app.injector().instanceOf(BackendGuard.class).getState("Product.related"));
+
+		JsonNode response = post();
+		assertEquals("UPSTREAM_UNAVAILABLE", response.path("errors").get(0).path("extensions").path("code").asText());
+		assertEquals("1", response.path("data").path("productById").path("id").asText());
+	}
+
+	private JsonNode post() {
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", QUERY)));
+		return Json.parse(contentAsString(result));
+	}
+
+	/**
+	 * Related offerings never come back in time; the offering itself is loaded as usual.
+	 */
+	@Singleton
+	static class HangingRelatedProductDataFetcher extends ProductDataFetcher {
+
+		final CountDownLatch interrupted = new CountDownLatch(1);
+
+		@Override
+		protected List<Collection<Product>> getRelatedOfferings(List<Long> ids) {
+			try {
+				Thread.sleep(2000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				Thread.currentThread().interrupt();
+			}
+			return super.getRelatedOfferings(ids);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import graphql.execution.AbortExecutionException;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.Test;
+
+public class DocumentCacheTest {
+
+	private final AtomicInteger parses = new AtomicInteger();
+
+	private final Function<String, PreparsedDocumentEntry> parse = query -> {
+		parses.incrementAndGet();
+		Document document = new Parser().parseDocument(query);
+		return new PreparsedDocumentEntry(document);
+	};
+
+	@Test
+	public void repeatedQueriesAreParsedOnce() {
+		DocumentCache cache = new DocumentCache(10);
+		String query = "{ productById(id: \"1\") { id } }";
+
+		PreparsedDocumentEntry first = cache.get(query, parse);
+		PreparsedDocumentEntry second = cache.get(query, parse);
+
+		assertSame(first, second);
+		assertEquals(1, parses.get());
+		assertEquals(1, cache.stats().hitCount());
+		assertEquals(1, cache.stats().missCount());
+	}
+
+	@Test
+	public void operationsOfOneDocumentShareItsEntry() {
+		DocumentCache cache = new DocumentCache(10);
+		String query = "query A { productById(id: \"1\") { id } } query B { productById(id: \"2\") { id } }";
+
+		// the engine asks by query text only, whichever operation the request names
+		cache.get(query, parse);
+		cache.get(query, parse);
+
+		assertEquals(1, parses.get());
+	}
+
+	@Test
+	public void evictsBeyondMaxEntries() {
+		DocumentCache cache = new DocumentCache(2);
+		for (int i = 0; i < 5; i++) {
+			cache.get("{ productById(id: \"" + i + "\") { id } }", parse);
+		}
+
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.stats().evictionCount());
+	}
+
+	@Test
+	public void failedComputationIsRethrownWithoutRecomputing() {
+		DocumentCache cache = new DocumentCache(10);
+		AbortExecutionException abort = new AbortExecutionException("maximum query complexity exceeded");
+		Function<String, PreparsedDocumentEntry> aborting = query -> {
+			parses.incrementAndGet();
+			throw abort;
+		};
+
+		try {
+			cache.get("{ productById(id: \"1\") { id } }", aborting);
+			fail();
+		} catch (AbortExecutionException e) {
+			assertSame(abort, e);
+		}
+		assertEquals(1, parses.get());
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,68 @@
+package schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.fakeApplication;
+import static play.test.Helpers.route;
+
+import graphql.GraphQL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.libs.Json;
+import play.mvc.Http.RequestBuilder;
+import play.mvc.Result;
+import play.test.Helpers;
+
+public class GraphQLProviderTest {
+
+	private static final String QUERY = "{ productById(id: \"1\") { id name description details { id name } } }";
+
+	private Application app;
+	private GraphQLProvider provider;
+
+	@Before
+	public void startApp() {
+		app = fakeApplication();
+		Helpers.start(app);
+		provider = app.injector().instanceOf(GraphQLProvider.class);
+	}
+
+	@After
+	public void stopApp() {
+		Helpers.stop(app);
+	}
+
+	@Test
+	public void engineIsBuiltOnceAndShared() {
+		GraphQL first = provider.graphQL();
+		assertSame(first, app.injector().instanceOf(GraphQLProvider.class).graphQL());
+
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", QUERY)));
+		assertEquals(200, result.status());
+		assertTrue(contentAsString(result).contains("\"productById\""));
+		assertSame(first, provider.graphQL());
+	}
+
+	@Test
+	public void reloadSwapsInNewVersionAtomically() {
+		GraphQLEngine before = provider.current();
+		assertTrue(provider.reload());
+
+		GraphQLEngine after = provider.current();
+		assertEquals(before.getVersion() + 1, after.getVersion());
+		assertNotSame(before.getGraphQL(), after.getGraphQL());
+		// an in-flight request holding the old engine can still finish on it
+		assertTrue(before.getGraphQL().execute(QUERY).getErrors().isEmpty());
+
+		Result result = route(app, new RequestBuilder().method(POST).uri("/graphql")
+				.bodyJson(Json.newObject().put("query", QUERY)));
+		assertTrue(contentAsString(result).contains("\"schemaVersion\":" + after.getVersion()));
+	}
+}
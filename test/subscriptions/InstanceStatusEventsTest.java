@@ -0,0 +1,125 @@
+package subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import entity.ProductInstance;
+import java.util.ArrayList;
+import java.util.List;
+import metrics.GraphQLMetrics;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import play.Configuration;
+
+public class InstanceStatusEventsTest {
+
+	private final InstanceStatusEvents events = new InstanceStatusEvents(new Configuration(ConfigFactory.parseString(
+			"graphql.subscriptions.bufferSize=2")), new GraphQLMetrics());
+
+	@Test
+	public void subscribersOfAProductShareOneTopic() {
+		Recorder first = subscribe(1L, Long.MAX_VALUE);
+		Recorder second = subscribe(1L, Long.MAX_VALUE);
+		Recorder other = subscribe(2L, Long.MAX_VALUE);
+		assertEquals(2, events.getTopicCount());
+
+		events.publish(instance(1L, "PROVISIONING"));
+		events.publish(instance(3L, "ACTIVE"));
+
+		assertEquals(1, first.statuses.size());
+		assertEquals("PROVISIONING", second.statuses.get(0));
+		assertTrue(other.statuses.isEmpty());
+	}
+
+	@Test
+	public void lastCancelRemovesTheTopic() {
+		Recorder first = subscribe(1L, Long.MAX_VALUE);
+		Recorder second = subscribe(1L, Long.MAX_VALUE);
+		first.subscription.cancel();
+		assertEquals(1, events.getTopicCount());
+		second.subscription.cancel();
+		assertEquals(0, events.getTopicCount());
+
+		events.publish(instance(1L, "ACTIVE"));
+		assertTrue(first.statuses.isEmpty());
+	}
+
+	@Test
+	public void eventsWaitForDemand() {
+		Recorder recorder = subscribe(1L, 0);
+		events.publish(instance(1L, "PROVISIONING"));
+		events.publish(instance(1L, "ACTIVE"));
+		assertTrue(recorder.statuses.isEmpty());
+
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.statuses.size());
+		recorder.subscription.request(5);
+		assertEquals("ACTIVE", recorder.statuses.get(1));
+		assertNull(recorder.error);
+	}
+
+	@Test
+	public void slowConsumerIsDroppedWithoutAffectingOthers() {
+		Recorder slow = subscribe(1L, 0);
+		Recorder fast = subscribe(1L, Long.MAX_VALUE);
+		for (int i = 0; i < 3; i++) {
+			events.publish(instance(1L, "STATUS " + i));
+		}
+
+		assertTrue(slow.error instanceof SlowConsumerException);
+		assertTrue(slow.statuses.isEmpty());
+		assertEquals(3, fast.statuses.size());
+		assertNull(fast.error);
+		assertEquals(1, events.getTopicCount());
+	}
+
+	private Recorder subscribe(Long productId, long initialDemand) {
+		Recorder recorder = new Recorder(initialDemand);
+		events.instanceStatusChanged(productId).subscribe(recorder);
+		return recorder;
+	}
+
+	private static ProductInstance instance(Long productId, String status) {
+		ProductInstance instance = new ProductInstance();
+		instance.id = productId;
+		instance.productId = productId;
+		instance.status = status;
+		return instance;
+	}
+
+	private static class Recorder implements Subscriber<ProductInstance> {
+		private final long initialDemand;
+		private final List<String> statuses = new ArrayList<>();
+		private Subscription subscription;
+		private Throwable error;
+
+		Recorder(long initialDemand) {
+			this.initialDemand = initialDemand;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+			if (initialDemand > 0) {
+				subscription.request(initialDemand);
+			}
+		}
+
+		@Override
+		public void onNext(ProductInstance instance) {
+			statuses.add(instance.status);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+}